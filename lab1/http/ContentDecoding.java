@@ -0,0 +1,125 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content-Encoding support shared by the lab1 clients.
+ *
+ * The clients send "Accept-Encoding: gzip, deflate" and the response body is
+ * decompressed as a stream, block by block, straight into the output file:
+ * neither the compressed nor the decoded body is ever held in memory.
+ * "deflate" is accepted both as specified (zlib wrapper) and as the raw
+ * deflate stream some servers send instead.
+ *
+ * Configuration: -Dhttp.compression=false (no Accept-Encoding sent).
+ */
+public final class ContentDecoding {
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ContentDecoding() {
+    }
+
+    /** Whether the clients should ask for compressed bodies. */
+    public static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty("http.compression"));
+    }
+
+    /** Normalized coding of a Content-Encoding value: "identity", "gzip", "deflate" or as is. */
+    public static String codingOf(String contentEncoding) {
+        if (contentEncoding == null || contentEncoding.isBlank()) return "identity";
+        String c = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        return c.equals("x-gzip") ? "gzip" : c;
+    }
+
+    public static boolean isEncoded(String contentEncoding) {
+        return !codingOf(contentEncoding).equals("identity");
+    }
+
+    /** Stream of the decoded bytes of wire (which it closes when closed). */
+    public static InputStream decoder(String contentEncoding, InputStream wire) throws IOException {
+        String coding = codingOf(contentEncoding);
+        switch (coding) {
+            case "identity":
+                return wire;
+            case "gzip":
+                return new GZIPInputStream(wire, BUFFER_SIZE);
+            case "deflate": {
+                // zlib (RFC 1950) normalement, deflate brut chez certains serveurs :
+                // l'en-tête zlib se reconnaît à ses deux premiers octets
+                PushbackInputStream in = new PushbackInputStream(wire, 2);
+                int b0 = in.read();
+                int b1 = (b0 == -1) ? -1 : in.read();
+                if (b1 != -1) in.unread(b1);
+                if (b0 != -1) in.unread(b0);
+                boolean zlib = b1 != -1 && (b0 & 0x0f) == 8 && ((b0 << 8) | b1) % 31 == 0;
+                return new InflaterInputStream(in, new Inflater(!zlib), BUFFER_SIZE);
+            }
+            default:
+                throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+        }
+    }
+
+    /**
+     * Decode the body read from wire into file from position on; returns the
+     * number of decoded bytes written.
+     */
+    public static long decodeTo(String contentEncoding, InputStream wire, FileChannel file, long position)
+            throws IOException {
+        InputStream in = decoder(contentEncoding, wire);
+        byte[] buf = new byte[BUFFER_SIZE];
+        long total = 0;
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            ByteBuffer src = ByteBuffer.wrap(buf, 0, n);
+            while (src.hasRemaining()) {
+                total += file.write(src, position + total);
+            }
+        }
+        return total;
+    }
+
+    /** "N bytes on the wire (gzip, 27.4%)" for the download reports. */
+    public static String describe(String contentEncoding, long wireBytes, long decodedBytes) {
+        return String.format(Locale.ROOT, "%d bytes on the wire (%s, %.1f%%)", wireBytes,
+                codingOf(contentEncoding), decodedBytes > 0 ? 100.0 * wireBytes / decodedBytes : 100.0);
+    }
+
+    /** Counts the bytes read through it (compressed size of a body). */
+    public static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        public CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long s = super.skip(n);
+            count += s;
+            return s;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
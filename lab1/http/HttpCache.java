@@ -0,0 +1,293 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Small on-disk HTTP cache shared by the lab1 clients.
+ *
+ * - one entry per URL: <sha256>.body (the bytes) + <sha256>.meta (url,
+ *   ETag, Last-Modified, freshness), in the cache directory;
+ * - a fresh entry (Cache-Control max-age / Expires, or 10% of the time since
+ *   Last-Modified, at most a day) is served without any network access;
+ * - a stale one is revalidated: If-None-Match / If-Modified-Since, and a
+ *   304 Not Modified only refreshes the metadata;
+ * - no-store responses are not kept, no-cache ones are always revalidated;
+ * - least recently used entries are evicted above the size budget.
+ *
+ * Configuration: -Dhttp.cache=false (off), -Dhttp.cache.dir (default
+ * .httpcache), -Dhttp.cache.maxBytes (default 64 MB).
+ */
+public class HttpCache {
+    private static final long HEURISTIC_MAX_MS = 24 * 3600 * 1000L;
+
+    /** One cached response. */
+    public static final class Entry {
+        final String key;
+        final String url;
+        String etag;
+        String lastModified;
+        long freshUntil;  // ms epoch
+        boolean noCache;  // toujours revalider
+        long size;
+        long lastAccess;
+
+        Entry(String key, String url) {
+            this.key = key;
+            this.url = url;
+        }
+
+        public String getEtag() { return etag; }
+        public String getLastModified() { return lastModified; }
+        public long getSize() { return size; }
+
+        public boolean isFresh() {
+            return !noCache && System.currentTimeMillis() < freshUntil;
+        }
+    }
+
+    private static HttpCache defaultCache;
+
+    private final Path dir;
+    private final long maxBytes;
+    // Ordre d'accès : le premier est le moins récemment utilisé
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    public HttpCache(Path dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        load();
+    }
+
+    /** Cache configured by the system properties, or null when disabled / unusable. */
+    public static synchronized HttpCache getDefault() {
+        if (defaultCache == null && !"false".equalsIgnoreCase(System.getProperty("http.cache"))) {
+            try {
+                defaultCache = new HttpCache(Paths.get(System.getProperty("http.cache.dir", ".httpcache")),
+                        Long.getLong("http.cache.maxBytes", 64L * 1024 * 1024));
+            } catch (IOException e) {
+                System.err.println("Cache disabled: " + e.getMessage());
+            }
+        }
+        return defaultCache;
+    }
+
+    /** Entry for url, or null. */
+    public synchronized Entry lookup(String url) {
+        Entry e = entries.get(key(url));
+        if (e == null || !Files.exists(body(e))) return null;
+        return e;
+    }
+
+    /** Conditional request headers for a stale entry ("Name: value\r\n" lines). */
+    public static String conditionalHeaders(Entry e) {
+        String h = "";
+        if (e.etag != null) h += "If-None-Match: " + e.etag + "\r\n";
+        if (e.lastModified != null) h += "If-Modified-Since: " + e.lastModified + "\r\n";
+        return h;
+    }
+
+    /** Copy the cached body to dest and mark the entry as used. */
+    public synchronized void copyTo(Entry e, Path dest) throws IOException {
+        Files.copy(body(e), dest, StandardCopyOption.REPLACE_EXISTING);
+        touch(e);
+    }
+
+    /**
+     * 304 Not Modified: the entry is valid again, with the freshness (and any
+     * new validator) of the response. Header names are lower case.
+     */
+    public synchronized void revalidated(Entry e, Map<String, String> headers) throws IOException {
+        applyHeaders(e, headers);
+        touch(e);
+    }
+
+    /**
+     * Store a complete 200 response whose body is in file (copied, the file
+     * stays where it is). Does nothing if the response must not be cached.
+     */
+    public synchronized void store(String url, Map<String, String> headers, Path file) throws IOException {
+        String cc = headers.getOrDefault("cache-control", "").toLowerCase(Locale.ROOT);
+        boolean cacheable = !cc.contains("no-store")
+                && (headers.containsKey("etag") || headers.containsKey("last-modified")
+                || cc.contains("max-age") || headers.containsKey("expires"));
+        String k = key(url);
+        Entry old = entries.remove(k);
+        if (old != null) {
+            totalBytes -= old.size;
+        }
+        long size = Files.size(file);
+        if (!cacheable || size > maxBytes) {
+            if (old != null) delete(old);
+            return;
+        }
+
+        Entry e = new Entry(k, url);
+        applyHeaders(e, headers);
+        e.size = size;
+        // Copie puis renommage : jamais de corps à moitié écrit sous le nom final
+        Path tmp = dir.resolve(k + ".tmp");
+        Files.copy(file, tmp, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tmp, body(e), StandardCopyOption.REPLACE_EXISTING);
+        entries.put(k, e);
+        totalBytes += size;
+        touch(e);
+        evict();
+    }
+
+    public synchronized String getStats() {
+        return entries.size() + " entries, " + totalBytes + "/" + maxBytes + " bytes";
+    }
+
+    // ------------------------------------------------------------------
+
+    private void applyHeaders(Entry e, Map<String, String> headers) {
+        if (headers.containsKey("etag")) e.etag = headers.get("etag");
+        if (headers.containsKey("last-modified")) e.lastModified = headers.get("last-modified");
+
+        long now = System.currentTimeMillis();
+        String cc = headers.getOrDefault("cache-control", "").toLowerCase(Locale.ROOT);
+        e.noCache = cc.contains("no-cache");
+        long maxAge = directive(cc, "max-age");
+        if (maxAge >= 0) {
+            e.freshUntil = now + maxAge * 1000;
+        } else if (headers.containsKey("expires")) {
+            long expires = parseDate(headers.get("expires"));
+            long date = parseDate(headers.get("date"));
+            // Expires relatif à l'horloge du serveur
+            e.freshUntil = (expires < 0) ? now : now + Math.max(0, expires - (date > 0 ? date : now));
+        } else if (e.lastModified != null && parseDate(e.lastModified) > 0) {
+            // Heuristique classique : 10 % de l'âge du document
+            long age = now - parseDate(e.lastModified);
+            e.freshUntil = now + Math.min(HEURISTIC_MAX_MS, Math.max(0, age / 10));
+        } else {
+            e.freshUntil = now; // à revalider à chaque fois
+        }
+    }
+
+    private void touch(Entry e) throws IOException {
+        e.lastAccess = System.currentTimeMillis();
+        entries.get(e.key); // remonte l'entrée dans l'ordre LRU
+        writeMeta(e);
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry lru = it.next();
+            it.remove();
+            totalBytes -= lru.size;
+            delete(lru);
+        }
+    }
+
+    private void delete(Entry e) {
+        try {
+            Files.deleteIfExists(body(e));
+            Files.deleteIfExists(meta(e));
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void writeMeta(Entry e) throws IOException {
+        Properties p = new Properties();
+        p.setProperty("url", e.url);
+        if (e.etag != null) p.setProperty("etag", e.etag);
+        if (e.lastModified != null) p.setProperty("lastModified", e.lastModified);
+        p.setProperty("freshUntil", Long.toString(e.freshUntil));
+        p.setProperty("noCache", Boolean.toString(e.noCache));
+        p.setProperty("size", Long.toString(e.size));
+        p.setProperty("lastAccess", Long.toString(e.lastAccess));
+        Path tmp = dir.resolve(e.key + ".meta.tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            p.store(w, null);
+        }
+        Files.move(tmp, meta(e), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Rebuild the index from the .meta files, oldest access first. */
+    private void load() throws IOException {
+        List<Entry> found = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.meta")) {
+            for (Path m : ds) {
+                String name = m.getFileName().toString();
+                Entry e = new Entry(name.substring(0, name.length() - 5), null);
+                Properties p = new Properties();
+                try (Reader r = Files.newBufferedReader(m, StandardCharsets.UTF_8)) {
+                    p.load(r);
+                    e = new Entry(e.key, p.getProperty("url"));
+                    e.etag = p.getProperty("etag");
+                    e.lastModified = p.getProperty("lastModified");
+                    e.freshUntil = Long.parseLong(p.getProperty("freshUntil", "0"));
+                    e.noCache = Boolean.parseBoolean(p.getProperty("noCache"));
+                    e.size = Long.parseLong(p.getProperty("size", "0"));
+                    e.lastAccess = Long.parseLong(p.getProperty("lastAccess", "0"));
+                } catch (IOException | RuntimeException ex) {
+                    Files.deleteIfExists(m); // méta illisible : entrée perdue
+                    continue;
+                }
+                if (e.url == null || !Files.exists(body(e))) {
+                    Files.deleteIfExists(m);
+                    continue;
+                }
+                found.add(e);
+            }
+        }
+        found.sort(Comparator.comparingLong(e -> e.lastAccess));
+        for (Entry e : found) {
+            entries.put(e.key, e);
+            totalBytes += e.size;
+        }
+        evict();
+    }
+
+    private Path body(Entry e) {
+        return dir.resolve(e.key + ".body");
+    }
+
+    private Path meta(Entry e) {
+        return dir.resolve(e.key + ".meta");
+    }
+
+    private static String key(String url) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 16; i++) sb.append(String.format("%02x", d[i]));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Value of a numeric Cache-Control directive, or -1. */
+    private static long directive(String cc, String name) {
+        int i = cc.indexOf(name + "=");
+        if (i < 0) return -1;
+        int start = i + name.length() + 1;
+        int end = start;
+        while (end < cc.length() && Character.isDigit(cc.charAt(end))) end++;
+        try {
+            return Long.parseLong(cc.substring(start, end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** RFC 1123 date in ms, or -1. */
+    static long parseDate(String s) {
+        if (s == null) return -1;
+        try {
+            return ZonedDateTime.parse(s.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
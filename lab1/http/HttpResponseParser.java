@@ -0,0 +1,384 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Byte-level HTTP/1.x response parser working on one reusable buffer.
+ *
+ * The socket stream is read in large blocks into the buffer; the status line,
+ * headers and body are then consumed from it. Nothing is lost between the
+ * headers and the body (as with a BufferedReader on top of the stream), and
+ * whatever was read past the end of a response stays in the buffer for the
+ * next one, so the same parser is reused for every response of a keep-alive
+ * (or pipelined) connection.
+ *
+ * Bodies: Content-Length, Transfer-Encoding: chunked (trailers skipped), or
+ * until the connection closes. 1xx interim responses are skipped.
+ *
+ * Built on a SocketChannel, transferBody(FileChannel, position) moves large
+ * bodies socket -> direct buffer -> file, without going through the heap
+ * (positional writes: several segments can fill one file in place).
+ *
+ *   HttpResponseParser p = new HttpResponseParser(socket.getInputStream());
+ *   while (p.readHeaders()) {
+ *       if (p.isSuccess()) p.transferBody(file); else p.skipBody();
+ *       if (!p.isKeepAlive()) break;
+ *   }
+ */
+public class HttpResponseParser {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private enum BodyState { NONE, LENGTH, CHUNK_SIZE, CHUNK_DATA, UNTIL_CLOSE, DONE }
+
+    private final InputStream in;
+    private final ReadableByteChannel channel; // null si construit sur un InputStream
+    private final byte[] buf;
+    private ByteBuffer direct; // gros corps vers un fichier, alloué au premier besoin
+    private int pos;
+    private int limit;
+
+    // Réponse courante
+    private String version;
+    private int status;
+    private String reason;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private long contentLength;
+    private boolean chunked;
+    private boolean keepAlive;
+
+    // État du corps
+    private BodyState state = BodyState.NONE;
+    private long remaining; // octets restants (Content-Length ou chunk courant)
+    private long bodyRead;  // octets de corps déjà rendus pour la réponse courante
+
+    public HttpResponseParser(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public HttpResponseParser(InputStream in, int bufferSize) {
+        this.in = in;
+        this.channel = null;
+        this.buf = new byte[bufferSize];
+    }
+
+    /** On a (blocking) channel: enables the direct-buffer path of transferBody(FileChannel, long). */
+    public HttpResponseParser(ReadableByteChannel channel) {
+        this.in = null;
+        this.channel = channel;
+        this.buf = new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * Parse the next response's status line and headers.
+     * Returns false on a clean end of stream before any byte of a response.
+     * The previous body, if not fully read, is skipped first.
+     */
+    public boolean readHeaders() throws IOException {
+        if (state != BodyState.NONE && state != BodyState.DONE) skipBody();
+        bodyRead = 0;
+        do {
+            String statusLine = readLine();
+            if (statusLine == null) {
+                state = BodyState.NONE;
+                return false;
+            }
+            parseStatusLine(statusLine);
+            headers.clear();
+            String line;
+            while ((line = readLine()) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon <= 0) throw new IOException("Malformed header line: " + line);
+                String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+                headers.merge(name, value, (a, b) -> a + ", " + b);
+            }
+            if (line == null) throw new EOFException("Connection closed in the response headers");
+        } while (status >= 100 && status < 200); // 100 Continue etc. : la vraie réponse suit
+
+        String te = getHeader("Transfer-Encoding");
+        chunked = te != null && te.toLowerCase(Locale.ROOT).contains("chunked");
+        String cl = getHeader("Content-Length");
+        contentLength = (cl != null && !chunked) ? Long.parseLong(cl.trim()) : -1;
+        String conn = getHeader("Connection");
+        keepAlive = "HTTP/1.0".equals(version)
+                ? conn != null && conn.equalsIgnoreCase("keep-alive")
+                : conn == null || !conn.equalsIgnoreCase("close");
+
+        if (status == 204 || status == 304) {
+            state = BodyState.DONE; // jamais de corps
+        } else if (chunked) {
+            state = BodyState.CHUNK_SIZE;
+        } else if (contentLength >= 0) {
+            remaining = contentLength;
+            state = remaining == 0 ? BodyState.DONE : BodyState.LENGTH;
+        } else {
+            state = BodyState.UNTIL_CLOSE;
+            keepAlive = false; // fin du corps = fermeture
+        }
+        return true;
+    }
+
+    /**
+     * Declare that the current response answers a HEAD request: it has no
+     * body, whatever Content-Length says.
+     */
+    public void noBody() {
+        state = BodyState.DONE;
+    }
+
+    /** Read body bytes into dst; -1 at the end of the body. */
+    public int readBody(byte[] dst, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        int n = nextBodySlice(len);
+        if (n <= 0) return -1;
+        System.arraycopy(buf, pos, dst, off, n);
+        pos += n;
+        return n;
+    }
+
+    /** Copy the whole body to out, straight from the parser's buffer. */
+    public long transferBody(OutputStream out) throws IOException {
+        long total = 0;
+        int n;
+        while ((n = nextBodySlice(buf.length)) > 0) {
+            out.write(buf, pos, n);
+            pos += n;
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Write the whole body to file, starting at position (positional writes,
+     * the channel's own position is not used). Returns the number of bytes.
+     */
+    public long transferBody(FileChannel file, long position) throws IOException {
+        long total = 0;
+        while (true) {
+            // D'abord ce qui est déjà dans le buffer du parser
+            if (pos < limit || channel == null || !bulkState()) {
+                int n = nextBodySlice(buf.length);
+                if (n <= 0) return total;
+                total += writeFully(file, ByteBuffer.wrap(buf, pos, n), position + total);
+                pos += n;
+                continue;
+            }
+            // Buffer vide, données du corps : socket -> buffer direct -> fichier
+            if (direct == null) direct = ByteBuffer.allocateDirect(256 * 1024);
+            direct.clear();
+            if (state != BodyState.UNTIL_CLOSE && remaining < direct.capacity()) {
+                direct.limit((int) remaining); // ne pas lire la réponse suivante
+            }
+            int r = channel.read(direct);
+            if (r == -1) {
+                if (state == BodyState.UNTIL_CLOSE) {
+                    state = BodyState.DONE;
+                    return total;
+                }
+                throw new EOFException("Body truncated, " + remaining + " bytes missing");
+            }
+            if (state != BodyState.UNTIL_CLOSE) remaining -= r;
+            bodyRead += r;
+            direct.flip();
+            total += writeFully(file, direct, position + total);
+        }
+    }
+
+    /** Discard the rest of the body (to reuse the connection). */
+    public long skipBody() throws IOException {
+        return transferBody(OutputStream.nullOutputStream());
+    }
+
+    /** The body as a stream (ends at the end of the body, close() does nothing). */
+    public InputStream bodyStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return readBody(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return readBody(b, off, len);
+            }
+        };
+    }
+
+    public String getVersion() { return version; }
+    public int getStatus() { return status; }
+    public String getReason() { return reason; }
+    public String getStatusLine() { return version + " " + status + " " + reason; }
+    public boolean isSuccess() { return status >= 200 && status < 300; }
+    public boolean isChunked() { return chunked; }
+    /** Content-Length, or -1 (chunked or delimited by the close). */
+    public long getContentLength() { return contentLength; }
+    /** True if another response can be read on this connection after this one. */
+    public boolean isKeepAlive() { return keepAlive; }
+    public boolean isBodyDone() { return state == BodyState.DONE; }
+    /** Body bytes of the current response handed out so far (to resume after an error). */
+    public long getBodyBytesRead() { return bodyRead; }
+
+    /** Header value (case-insensitive name), repeated headers joined with ", ". */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    // ------------------------------------------------------------------
+
+    /**
+     * Make the next body bytes available at buf[pos..pos+n) and return n
+     * (at most max), or 0 at the end of the body.
+     */
+    private int nextBodySlice(int max) throws IOException {
+        while (true) {
+            switch (state) {
+                case LENGTH:
+                case CHUNK_DATA: {
+                    if (remaining == 0) {
+                        if (state == BodyState.LENGTH) {
+                            state = BodyState.DONE;
+                        } else {
+                            expectCrlf();
+                            state = BodyState.CHUNK_SIZE;
+                        }
+                        continue;
+                    }
+                    if (pos == limit && fill() == -1) {
+                        throw new EOFException("Body truncated, " + remaining + " bytes missing");
+                    }
+                    int n = (int) Math.min(Math.min(limit - pos, remaining), max);
+                    remaining -= n;
+                    bodyRead += n;
+                    return n;
+                }
+                case CHUNK_SIZE: {
+                    String line = readLine();
+                    if (line == null) throw new EOFException("Chunked body truncated");
+                    int semi = line.indexOf(';'); // extensions ignorées
+                    String hex = (semi >= 0 ? line.substring(0, semi) : line).trim();
+                    try {
+                        remaining = Long.parseLong(hex, 16);
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Bad chunk size: " + line);
+                    }
+                    if (remaining == 0) {
+                        String trailer;
+                        while ((trailer = readLine()) != null && !trailer.isEmpty()) {
+                            // trailers ignorés
+                        }
+                        state = BodyState.DONE;
+                    } else {
+                        state = BodyState.CHUNK_DATA;
+                    }
+                    continue;
+                }
+                case UNTIL_CLOSE: {
+                    if (pos == limit && fill() == -1) {
+                        state = BodyState.DONE;
+                        return 0;
+                    }
+                    int n = Math.min(limit - pos, max);
+                    bodyRead += n;
+                    return n;
+                }
+                default:
+                    return 0;
+            }
+        }
+    }
+
+    /** Body data is being read and nothing special (chunk header, end) comes next. */
+    private boolean bulkState() {
+        return state == BodyState.UNTIL_CLOSE
+                || ((state == BodyState.LENGTH || state == BodyState.CHUNK_DATA) && remaining > 0);
+    }
+
+    private static int writeFully(FileChannel file, ByteBuffer src, long position) throws IOException {
+        int n = 0;
+        while (src.hasRemaining()) {
+            n += file.write(src, position + n);
+        }
+        return n;
+    }
+
+    private void parseStatusLine(String line) throws IOException {
+        // HTTP/1.1 200 OK  (la raison peut être vide)
+        int sp1 = line.indexOf(' ');
+        if (sp1 < 0 || !line.startsWith("HTTP/")) throw new IOException("Bad status line: " + line);
+        int sp2 = line.indexOf(' ', sp1 + 1);
+        String code = (sp2 < 0) ? line.substring(sp1 + 1) : line.substring(sp1 + 1, sp2);
+        version = line.substring(0, sp1);
+        reason = (sp2 < 0) ? "" : line.substring(sp2 + 1);
+        try {
+            status = Integer.parseInt(code.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad status line: " + line);
+        }
+    }
+
+    private void expectCrlf() throws IOException {
+        String line = readLine();
+        if (line == null) throw new EOFException("Chunked body truncated");
+        if (!line.isEmpty()) throw new IOException("Missing CRLF after chunk");
+    }
+
+    /**
+     * Next line (without CRLF) straight from the buffer; null at end of stream
+     * with nothing buffered.
+     */
+    private String readLine() throws IOException {
+        int scanFrom = pos;
+        while (true) {
+            for (int i = scanFrom; i < limit; i++) {
+                if (buf[i] == '\n') {
+                    int end = (i > pos && buf[i - 1] == '\r') ? i - 1 : i;
+                    String line = new String(buf, pos, end - pos, StandardCharsets.ISO_8859_1);
+                    pos = i + 1;
+                    return line;
+                }
+            }
+            scanFrom = limit - pos; // position relative après compactage
+            if (pos == 0 && limit == buf.length) {
+                throw new IOException("Header line longer than " + buf.length + " bytes");
+            }
+            compact();
+            scanFrom += pos;
+            if (fill() == -1) {
+                if (pos == limit) return null;
+                throw new EOFException("Connection closed in the middle of a line");
+            }
+        }
+    }
+
+    /** Move the unread bytes to the start of the buffer. */
+    private void compact() {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+    }
+
+    /** Read more bytes at the end of the buffer; -1 at end of stream. */
+    private int fill() throws IOException {
+        if (pos == limit) {
+            pos = 0;
+            limit = 0;
+        } else if (limit == buf.length) {
+            compact();
+        }
+        int n = (channel != null)
+                ? channel.read(ByteBuffer.wrap(buf, limit, buf.length - limit))
+                : in.read(buf, limit, buf.length - limit);
+        if (n > 0) limit += n;
+        return n;
+    }
+}
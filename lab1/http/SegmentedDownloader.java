@@ -0,0 +1,287 @@
+import java.io.*;
+import java.net.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resumable and segmented HTTP downloads, written to disk through a FileChannel.
+ *
+ * - resume: the file is downloaded into <file>.part; if a .part is already
+ *   there, only the missing bytes are requested (Range, with If-Range on the
+ *   validator kept in <file>.part.meta) and appended. A 200 instead of 206
+ *   (range ignored or file changed) restarts from zero. A connection lost in
+ *   the middle is retried from the current size of the .part.
+ * - segmented: a HEAD gives the size, <file>.seg is allocated to it, and N
+ *   connections each fetch one byte range and write it in place (positional
+ *   writes on one shared FileChannel). A broken segment continues from where
+ *   it stopped. Falls back to resume when the server has no byte ranges.
+ *   The preallocated file is never a .part: its size says nothing about the
+ *   missing bytes, so it must not be resumed (a .part as long as the file
+ *   would be taken as complete on a 416). It is dropped if a segment fails.
+ *
+ * So a .part is only ever written sequentially, by this class or by
+ * httpClient / httpClientModern. It is renamed to the final name only once
+ * complete.
+ *
+ * Usage: java SegmentedDownloader <URL> [segments] [outFile]
+ */
+public class SegmentedDownloader {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final String host;
+    private final int port;
+    private final String path;
+    private final Path dest;
+    private final Path part;
+    private final Path meta;
+    private final Path seg;
+
+    public SegmentedDownloader(String host, int port, String path, Path dest) {
+        this.host = host;
+        this.port = port;
+        this.path = path;
+        this.dest = dest;
+        this.part = dest.resolveSibling(dest.getFileName() + ".part");
+        this.meta = dest.resolveSibling(dest.getFileName() + ".part.meta");
+        this.seg = dest.resolveSibling(dest.getFileName() + ".seg");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java SegmentedDownloader <URL> [segments] [outFile]");
+            System.err.println("Example: java SegmentedDownloader http://localhost:8081/gen/100000000 4");
+            return;
+        }
+        URL url = URI.create(args[0]).toURL();
+        if (!"http".equalsIgnoreCase(url.getProtocol())) {
+            System.err.println("Only HTTP protocol is supported");
+            return;
+        }
+        int segments = (args.length >= 2) ? Integer.parseInt(args[1]) : 4;
+        String p = url.getPath().isEmpty() ? "/" : url.getPath();
+        String name = p.substring(p.lastIndexOf('/') + 1);
+        Path out = Paths.get((args.length >= 3) ? args[2] : (name.isEmpty() ? "index.html" : name));
+
+        SegmentedDownloader d = new SegmentedDownloader(url.getHost(),
+                (url.getPort() != -1) ? url.getPort() : 80, url.getFile().isEmpty() ? "/" : url.getFile(), out);
+        long start = System.nanoTime();
+        try {
+            long size = d.download(segments);
+            double s = (System.nanoTime() - start) / 1e9;
+            System.out.printf("File saved as %s: %d bytes in %.3f s (%.2f MB/s)%n", out, size, s, size / s / 1e6);
+        } catch (IOException e) {
+            System.err.println("Download failed: " + e.getMessage()
+                    + (Files.exists(d.part) ? " (run again to resume)" : ""));
+        }
+    }
+
+    /** Segmented when segments > 1 and the server allows it, else single connection with resume. */
+    public long download(int segments) throws IOException {
+        return (segments > 1) ? segmented(segments) : resume();
+    }
+
+    /** Single connection, continuing a previous .part if there is one. */
+    public long resume() throws IOException {
+        IOException last = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            long have = Files.exists(part) ? Files.size(part) : 0;
+            String validator = (have > 0 && Files.exists(meta)) ? Files.readString(meta).trim() : null;
+            String extra = "";
+            if (have > 0) {
+                extra = "Range: bytes=" + have + "-\r\n" + (validator != null ? "If-Range: " + validator + "\r\n" : "");
+                System.out.println("Resuming " + dest + " at byte " + have);
+            }
+            try (SocketChannel ch = open();
+                 FileChannel file = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                HttpResponseParser response = send(ch, "GET", extra);
+                int status = response.getStatus();
+                if (status == 416 && have > 0 && totalLength(response) == have) {
+                    return complete(have); // tout était déjà là
+                }
+                if (status == 206) {
+                    if (rangeStart(response) != have) throw new IOException("Unexpected " + response.getHeader("Content-Range"));
+                } else if (response.isSuccess()) {
+                    have = 0; // plage ignorée ou fichier modifié : on repart de zéro
+                    file.truncate(0);
+                    saveValidator(response);
+                } else {
+                    throw new IOException("Server returned " + response.getStatusLine());
+                }
+                have += response.transferBody(file, have);
+                return complete(have);
+            } catch (IOException e) {
+                last = e;
+                System.err.println("Attempt " + attempt + " failed: " + e.getMessage());
+            }
+        }
+        throw last;
+    }
+
+    /** N parallel range requests written in place into the .seg. */
+    public long segmented(int segments) throws IOException {
+        long length;
+        String validator;
+        try (SocketChannel ch = open()) {
+            HttpResponseParser head = send(ch, "HEAD", "");
+            head.noBody();
+            if (!head.isSuccess()) throw new IOException("Server returned " + head.getStatusLine());
+            length = head.getContentLength();
+            validator = validatorOf(head);
+            if (length <= 0 || !"bytes".equalsIgnoreCase(head.getHeader("Accept-Ranges"))) {
+                System.out.println("No byte ranges on this server, single connection");
+                return resume();
+            }
+        }
+        segments = (int) Math.min(segments, Math.max(1, length / (64 * 1024))); // pas de segments minuscules
+        System.out.println("Downloading " + length + " bytes in " + segments + " segments");
+
+        // Fichier alloué à la taille finale, chaque segment écrit à sa place
+        try (RandomAccessFile raf = new RandomAccessFile(seg.toFile(), "rw")) {
+            raf.setLength(length);
+        }
+        AtomicLong written = new AtomicLong();
+        List<IOException> errors = new ArrayList<>();
+        try (FileChannel file = FileChannel.open(seg, StandardOpenOption.WRITE)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < segments; i++) {
+                long first = length * i / segments;
+                long last = length * (i + 1) / segments - 1;
+                Thread t = new Thread(() -> {
+                    try {
+                        written.addAndGet(fetchSegment(file, first, last, validator));
+                    } catch (IOException e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    } catch (RuntimeException e) {
+                        // ex. Content-Range illisible : perdue, complete() renommerait un .part troué
+                        synchronized (errors) {
+                            errors.add(new IOException("Segment " + first + "-" + last + ": " + e, e));
+                        }
+                    }
+                }, "segment-" + i);
+                threads.add(t);
+                t.start();
+            }
+            for (Thread t : threads) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted");
+                }
+            }
+        }
+        if (!errors.isEmpty() || written.get() != length) {
+            // .seg pré-alloué : sa taille ne dit rien de ce qui manque, on ne le garde pas
+            Files.deleteIfExists(seg);
+            throw errors.isEmpty()
+                    ? new IOException("Incomplete download: " + written.get() + "/" + length + " bytes")
+                    : errors.get(0);
+        }
+        Files.move(seg, dest, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(part); // un .part d'une session précédente n'a plus lieu d'être
+        Files.deleteIfExists(meta);
+        return written.get();
+    }
+
+    /** One byte range [first, last]; a broken connection continues where it stopped. */
+    private long fetchSegment(FileChannel file, long first, long last, String validator) throws IOException {
+        long next = first;
+        int failures = 0;
+        while (next <= last) {
+            HttpResponseParser response = null;
+            try (SocketChannel ch = open()) {
+                response = send(ch, "GET", "Range: bytes=" + next + "-" + last + "\r\n"
+                        + (validator != null ? "If-Range: " + validator + "\r\n" : ""));
+                if (response.getStatus() != 206 || rangeStart(response) != next) {
+                    throw new FileChangedException("Segment " + first + "-" + last + ": server returned "
+                            + response.getStatusLine() + " (file changed?)");
+                }
+                next += response.transferBody(file, next);
+            } catch (FileChangedException e) {
+                throw e;
+            } catch (IOException e) {
+                long progress = (response != null) ? response.getBodyBytesRead() : 0;
+                next += progress;
+                failures = (progress > 0) ? 1 : failures + 1;
+                if (failures >= MAX_ATTEMPTS) throw e;
+                System.err.println("Segment " + first + "-" + last + " interrupted at " + next + ", retrying");
+            }
+        }
+        return last - first + 1;
+    }
+
+    private static final class FileChangedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        FileChangedException(String message) {
+            super(message);
+        }
+    }
+
+    private long complete(long size) throws IOException {
+        Files.move(part, dest, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(meta);
+        return size;
+    }
+
+    private SocketChannel open() throws IOException {
+        return SocketChannel.open(new InetSocketAddress(host, port));
+    }
+
+    private HttpResponseParser send(SocketChannel ch, String method, String extraHeaders) throws IOException {
+        String request = String.format("%s %s HTTP/1.1\r\n", method, path);
+        request += String.format("Host: %s\r\n", host);
+        request += "User-Agent: Mozilla/5.0 JavaHTTPClient/1.0\r\n";
+        request += "Accept: */*\r\n";
+        request += extraHeaders;
+        request += "Connection: close\r\n";
+        request += "\r\n";
+        OutputStream out = ch.socket().getOutputStream();
+        out.write(request.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+
+        HttpResponseParser response = new HttpResponseParser(ch);
+        if (!response.readHeaders()) throw new EOFException("No response from " + host);
+        return response;
+    }
+
+    /** ETag if strong, else Last-Modified (usable in If-Range), or null. */
+    static String validatorOf(HttpResponseParser response) {
+        String etag = response.getHeader("ETag");
+        if (etag != null && !etag.startsWith("W/")) return etag;
+        return response.getHeader("Last-Modified");
+    }
+
+    private void saveValidator(HttpResponseParser response) throws IOException {
+        String v = validatorOf(response);
+        if (v != null) {
+            Files.writeString(meta, v);
+        } else {
+            Files.deleteIfExists(meta);
+        }
+    }
+
+    /** First byte of "Content-Range: bytes a-b/n", or -1. */
+    static long rangeStart(HttpResponseParser response) {
+        String cr = response.getHeader("Content-Range");
+        if (cr == null || !cr.startsWith("bytes ")) return -1;
+        int dash = cr.indexOf('-');
+        return (dash < 0) ? -1 : Long.parseLong(cr.substring(6, dash).trim());
+    }
+
+    /** Total size of "Content-Range: bytes x/n", or -1. */
+    static long totalLength(HttpResponseParser response) {
+        String cr = response.getHeader("Content-Range");
+        if (cr == null) return -1;
+        int slash = cr.lastIndexOf('/');
+        String n = cr.substring(slash + 1).trim();
+        return (slash < 0 || n.equals("*")) ? -1 : Long.parseLong(n);
+    }
+}
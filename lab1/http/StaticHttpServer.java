@@ -0,0 +1,613 @@
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Small non-blocking HTTP/1.1 server for static files (local load target for
+ * the clients and benchmarks of this lab).
+ *
+ * - a few selector threads, each owning its connections; one of them accepts
+ *   and hands new connections out round-robin;
+ * - keep-alive and pipelined requests (answered in order), idle connections
+ *   closed after a timeout;
+ * - large files are sent with FileChannel.transferTo (sendfile on Linux: the
+ *   bytes do not go through the JVM);
+ * - small files are kept in memory (direct buffers) and sent with one
+ *   gathering write together with the headers; an entry is dropped when the
+ *   file's size or modification time changes;
+ * - files are read and compressed by a loader thread, never on a selector
+ *   thread: until the entry is ready the file is sent from disk. A file that
+ *   ends up with nothing worth keeping (gzip gains < 10 %) gets an empty entry
+ *   for its size and mtime, so it is not read and compressed again each time;
+ * - text files (html, css, js, json...) are also kept gzipped, compressed once,
+ *   and sent with Content-Encoding: gzip to clients that accept it (own
+ *   ETag, Vary: Accept-Encoding);
+ * - Content-Length, ETag and Last-Modified on every file, If-None-Match and
+ *   If-Modified-Since answered with 304, GET and HEAD only.
+ *
+ * Usage: java StaticHttpServer [port] [root] [ioThreads]
+ * Configuration: -Dstatic.cacheFileMax (bytes, default 64 KB), -Dstatic.gzipFileMax
+ * (largest text file kept gzipped, default 4 MB), -Dstatic.cacheBytes (default
+ * 16 MB), -Dstatic.idleTimeout (ms, default 30000).
+ */
+public class StaticHttpServer {
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+
+    private final int port;
+    private final Path root;
+    private final int ioThreads;
+    private final long cacheFileMax = Long.getLong("static.cacheFileMax", 64 * 1024L);
+    private final long gzipFileMax = Long.getLong("static.gzipFileMax", 4L * 1024 * 1024);
+    private final long cacheBytesMax = Long.getLong("static.cacheBytes", 16L * 1024 * 1024);
+    private final long idleTimeoutMs = Long.getLong("static.idleTimeout", 30_000L);
+
+    private final ConcurrentHashMap<Path, CachedFile> cache = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final Set<Path> loading = ConcurrentHashMap.newKeySet();
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "http-cache-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bodyBytes = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong gzipped = new AtomicLong();
+
+    private IoLoop[] loops;
+
+    /**
+     * File held in memory (as is and/or gzipped), with its precomputed validators.
+     * Both buffers null: nothing worth keeping for this size and mtime.
+     */
+    private static final class CachedFile {
+        final ByteBuffer body; // direct, lecture seule : duplicate() par réponse ; null si trop gros
+        final ByteBuffer gzip; // idem, version gzip ; null si pas du texte ou sans gain
+        final long size;
+        final long mtime;
+        final String etag;
+        final String lastModified;
+        final String contentType;
+
+        CachedFile(ByteBuffer body, ByteBuffer gzip, long size, long mtime, String etag, String lastModified,
+                   String contentType) {
+            this.body = body;
+            this.gzip = gzip;
+            this.size = size;
+            this.mtime = mtime;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+        }
+
+        boolean isEmpty() {
+            return body == null && gzip == null;
+        }
+    }
+
+    /** One queued response: headers, then a memory body or a file region. */
+    private static final class Response {
+        final ByteBuffer headers;
+        final ByteBuffer body;   // petit fichier en cache, ou null
+        final FileChannel file;  // gros fichier, ou null
+        long position;
+        long remaining;
+        final boolean close;
+
+        Response(ByteBuffer headers, ByteBuffer body, FileChannel file, long length, boolean close) {
+            this.headers = headers;
+            this.body = body;
+            this.file = file;
+            this.remaining = (file != null) ? length : 0;
+            this.close = close;
+        }
+    }
+
+    /** Per-connection state, only touched by its IoLoop thread. */
+    private static final class Conn {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(MAX_HEADER_BYTES);
+        final ArrayDeque<Response> out = new ArrayDeque<>();
+        long lastActive = System.currentTimeMillis();
+        boolean closeAfterWrite;
+
+        Conn(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    public StaticHttpServer(int port, Path root, int ioThreads) {
+        this.port = port;
+        this.root = root.toAbsolutePath().normalize();
+        this.ioThreads = Math.max(1, ioThreads);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = (args.length >= 1) ? Integer.parseInt(args[0]) : 8082;
+        Path root = Paths.get((args.length >= 2) ? args[1] : ".");
+        int threads = (args.length >= 3) ? Integer.parseInt(args[2])
+                : Math.min(4, Runtime.getRuntime().availableProcessors());
+
+        StaticHttpServer server = new StaticHttpServer(port, root, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::printStats));
+        server.start();
+    }
+
+    public void start() throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        server.configureBlocking(false);
+
+        loops = new IoLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            loops[i] = new IoLoop(i);
+        }
+        server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        for (IoLoop loop : loops) {
+            loop.thread.start();
+        }
+        System.out.println("StaticHttpServer on port " + port + ", root " + root + ", "
+                + ioThreads + " I/O threads, cache files <= " + cacheFileMax + " bytes");
+    }
+
+    // ================= I/O loops =================
+
+    private final class IoLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Queue<SocketChannel> incoming = new ConcurrentLinkedQueue<>();
+        int nextLoop; // répartition round-robin (boucle 0 seulement)
+
+        IoLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "http-io-" + index);
+        }
+
+        void hand(SocketChannel ch) {
+            incoming.add(ch);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            long lastSweep = System.currentTimeMillis();
+            while (true) {
+                try {
+                    selector.select(1000);
+                    SocketChannel ch;
+                    while ((ch = incoming.poll()) != null) {
+                        ch.register(selector, SelectionKey.OP_READ, new Conn(ch));
+                    }
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) {
+                            accept((ServerSocketChannel) key.channel());
+                            continue;
+                        }
+                        Conn c = (Conn) key.attachment();
+                        try {
+                            if (key.isReadable()) onReadable(key, c);
+                            if (key.isValid() && key.isWritable()) onWritable(key, c);
+                        } catch (IOException e) {
+                            close(key, c);
+                        }
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now - lastSweep >= 1000) {
+                        lastSweep = now;
+                        closeIdle(now);
+                    }
+                } catch (IOException e) {
+                    System.err.println(thread.getName() + ": " + e.getMessage());
+                }
+            }
+        }
+
+        private void accept(ServerSocketChannel server) throws IOException {
+            SocketChannel ch;
+            while ((ch = server.accept()) != null) {
+                ch.configureBlocking(false);
+                ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connections.incrementAndGet();
+                IoLoop target = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+                if (target == this) {
+                    ch.register(selector, SelectionKey.OP_READ, new Conn(ch));
+                } else {
+                    target.hand(ch);
+                }
+            }
+        }
+
+        private void onReadable(SelectionKey key, Conn c) throws IOException {
+            int n = c.channel.read(c.in);
+            if (n == -1) {
+                // Le client a fini d'envoyer : on termine les réponses en cours puis on ferme
+                c.closeAfterWrite = true;
+                if (c.out.isEmpty()) close(key, c);
+                else key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            c.lastActive = System.currentTimeMillis();
+            parseRequests(c);
+            if (!c.out.isEmpty()) onWritable(key, c);
+            else if (!c.in.hasRemaining()) {
+                queueError(c, "431 Request Header Fields Too Large");
+                onWritable(key, c);
+            }
+        }
+
+        private void onWritable(SelectionKey key, Conn c) throws IOException {
+            Response r;
+            while ((r = c.out.peek()) != null) {
+                if (!writeResponse(c, r)) {
+                    key.interestOps(SelectionKey.OP_WRITE); // socket pleine : on attend
+                    return;
+                }
+                c.out.poll();
+                if (r.file != null) r.file.close();
+                if (r.close) {
+                    c.closeAfterWrite = true;
+                    c.out.forEach(StaticHttpServer::closeFile);
+                    c.out.clear();
+                }
+            }
+            c.lastActive = System.currentTimeMillis();
+            if (c.closeAfterWrite) {
+                close(key, c);
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            // Requêtes pipelinées déjà reçues pendant l'écriture
+            if (c.in.position() > 0) {
+                parseRequests(c);
+                if (!c.out.isEmpty()) onWritable(key, c);
+            }
+        }
+
+        private void closeIdle(long now) {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Conn) {
+                    Conn c = (Conn) key.attachment();
+                    if (now - c.lastActive > idleTimeoutMs) close(key, c);
+                }
+            }
+        }
+
+        private void close(SelectionKey key, Conn c) {
+            key.cancel();
+            c.out.forEach(StaticHttpServer::closeFile);
+            c.out.clear();
+            try {
+                c.channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Write as much of r as the socket takes; true when r is completely sent.
+     * Any progress counts as activity for closeIdle (long downloads).
+     */
+    private boolean writeResponse(Conn c, Response r) throws IOException {
+        SocketChannel ch = c.channel;
+        if (r.body != null) {
+            // En-têtes + corps en mémoire : une seule écriture groupée
+            ByteBuffer[] both = {r.headers, r.body};
+            while (r.headers.hasRemaining() || r.body.hasRemaining()) {
+                int before = r.body.remaining();
+                long n = ch.write(both);
+                bodyBytes.addAndGet(before - r.body.remaining());
+                if (n == 0) return false;
+                c.lastActive = System.currentTimeMillis();
+            }
+            return true;
+        }
+        while (r.headers.hasRemaining()) {
+            if (ch.write(r.headers) == 0) return false;
+            c.lastActive = System.currentTimeMillis();
+        }
+        while (r.remaining > 0) {
+            long n = r.file.transferTo(r.position, r.remaining, ch); // sendfile
+            if (n <= 0) return false;
+            r.position += n;
+            r.remaining -= n;
+            bodyBytes.addAndGet(n);
+            c.lastActive = System.currentTimeMillis();
+        }
+        return true;
+    }
+
+    private static void closeFile(Response r) {
+        if (r.file != null) {
+            try {
+                r.file.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // ================= Requests =================
+
+    /** Turn every complete request in c.in into a queued response. */
+    private void parseRequests(Conn c) throws IOException {
+        ByteBuffer in = c.in;
+        in.flip();
+        try {
+            while (!c.closeAfterWrite) {
+                int end = headerEnd(in);
+                if (end < 0) break; // requête incomplète
+                String head = new String(in.array(), in.position(), end - in.position(), StandardCharsets.ISO_8859_1);
+                in.position(end + 4);
+                if (head.isEmpty()) continue;
+                handle(c, head);
+            }
+        } finally {
+            in.compact();
+        }
+    }
+
+    /** Index of the "\r\n\r\n" ending the headers, or -1. */
+    private static int headerEnd(ByteBuffer in) {
+        byte[] a = in.array();
+        for (int i = in.position(); i + 3 < in.limit(); i++) {
+            if (a[i] == '\r' && a[i + 1] == '\n' && a[i + 2] == '\r' && a[i + 3] == '\n') return i;
+        }
+        return -1;
+    }
+
+    private void handle(Conn c, String head) throws IOException {
+        requests.incrementAndGet();
+        String[] lines = head.split("\r\n");
+        String[] parts = lines[0].split(" ");
+        if (parts.length != 3 || !parts[2].startsWith("HTTP/1.")) {
+            queueError(c, "400 Bad Request");
+            return;
+        }
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        lines[i].substring(colon + 1).trim());
+            }
+        }
+        String conn = headers.getOrDefault("connection", "");
+        boolean close = parts[2].equals("HTTP/1.0") ? !conn.equalsIgnoreCase("keep-alive")
+                : conn.equalsIgnoreCase("close");
+
+        boolean headOnly = parts[0].equals("HEAD");
+        if (!headOnly && !parts[0].equals("GET")) {
+            queue(c, new Response(headers("405 Method Not Allowed", "text/plain", 0, null, null, true,
+                    "Allow: GET, HEAD\r\n"), null, null, 0, true));
+            return;
+        }
+
+        String target = parts[1];
+        int q = target.indexOf('?');
+        if (q >= 0) target = target.substring(0, q);
+        Path file;
+        try {
+            file = root.resolve(URLDecoder.decode(target, StandardCharsets.UTF_8).substring(1)).normalize();
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            queueError(c, "400 Bad Request");
+            return;
+        }
+        if (Files.isDirectory(file)) file = file.resolve("index.html");
+        BasicFileAttributes attrs;
+        try {
+            attrs = file.startsWith(root) ? Files.readAttributes(file, BasicFileAttributes.class) : null;
+        } catch (IOException e) {
+            attrs = null;
+        }
+        if (attrs == null || !attrs.isRegularFile()) {
+            queueError(c, "404 Not Found", close);
+            return;
+        }
+
+        long size = attrs.size();
+        long mtime = attrs.lastModifiedTime().toMillis() / 1000 * 1000;
+        String type = contentType(file);
+        CachedFile cached = (size <= cacheFileMax || (size <= gzipFileMax && compressible(type)))
+                ? cached(file, size, mtime, type) : null;
+        // Représentation gzip pour les clients qui l'acceptent, avec son propre ETag
+        boolean gzip = cached != null && cached.gzip != null && acceptsGzip(headers.get("accept-encoding"));
+        String etag = (cached == null) ? etag(size, mtime) : gzip ? gzipEtag(cached.etag) : cached.etag;
+        String lastModified = (cached != null) ? cached.lastModified : httpDate(mtime);
+        String extra = (cached != null && cached.gzip != null) ? "Vary: Accept-Encoding\r\n" : "";
+
+        if (notModified(headers, etag, mtime)) {
+            notModified.incrementAndGet();
+            queue(c, new Response(headers("304 Not Modified", null, -1, etag, lastModified, close, extra),
+                    null, null, 0, close));
+            return;
+        }
+        if (gzip) {
+            extra += "Content-Encoding: gzip\r\n";
+            ByteBuffer h = headers("200 OK", type, cached.gzip.remaining(), etag, lastModified, close, extra);
+            gzipped.incrementAndGet();
+            queue(c, new Response(h, headOnly ? null : cached.gzip.duplicate(), null, 0, close));
+            return;
+        }
+        ByteBuffer h = headers("200 OK", type, size, etag, lastModified, close, extra);
+        if (headOnly) {
+            queue(c, new Response(h, null, null, 0, close));
+        } else if (cached != null && cached.body != null) {
+            cacheHits.incrementAndGet();
+            queue(c, new Response(h, cached.body.duplicate(), null, size, close));
+        } else {
+            queue(c, new Response(h, null, FileChannel.open(file, StandardOpenOption.READ), size, close));
+        }
+    }
+
+    private void queue(Conn c, Response r) {
+        c.out.add(r);
+        if (r.close) c.closeAfterWrite = true; // plus rien n'est lu après
+    }
+
+    private void queueError(Conn c, String status) {
+        queueError(c, status, true);
+    }
+
+    private void queueError(Conn c, String status, boolean close) {
+        byte[] body = (status + "\n").getBytes(StandardCharsets.ISO_8859_1);
+        queue(c, new Response(headers(status, "text/plain", body.length, null, null, close, ""),
+                ByteBuffer.wrap(body), null, body.length, close));
+    }
+
+    /**
+     * File from memory, or null: absent, changed on disk, over budget or not
+     * worth keeping. A missing or stale entry is (re)loaded by the loader
+     * thread; this request is served from disk meanwhile.
+     */
+    private CachedFile cached(Path file, long size, long mtime, String type) {
+        CachedFile cf = cache.get(file);
+        if (cf != null && cf.size == size && cf.mtime == mtime) return cf.isEmpty() ? null : cf;
+        if (cf != null && cache.remove(file, cf)) cachedBytes.addAndGet(-memoryOf(cf));
+        if (cachedBytes.get() + size > cacheBytesMax) return null; // budget plein : servi depuis le disque
+        if (loading.add(file)) {
+            loader.execute(() -> {
+                try {
+                    load(file, size, mtime, type);
+                } catch (IOException e) {
+                    // fichier disparu ou illisible : la prochaine requête réessaiera
+                } finally {
+                    loading.remove(file);
+                }
+            });
+        }
+        return null;
+    }
+
+    /** Loader thread: read (and compress) the file, then publish its entry. */
+    private void load(Path file, long size, long mtime, String type) throws IOException {
+        if (cachedBytes.get() + size > cacheBytesMax) return;
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length != size) return; // fichier modifié entre-temps
+        ByteBuffer body = null;
+        if (size <= cacheFileMax) {
+            body = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().asReadOnlyBuffer();
+        }
+        ByteBuffer gz = null;
+        if (compressible(type)) {
+            // Compressé une fois pour toutes ; gardé seulement s'il fait gagner au moins 10 %
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(bytes.length / 3 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(buf)) {
+                out.write(bytes);
+            }
+            if (buf.size() < bytes.length * 0.9) {
+                gz = ByteBuffer.allocateDirect(buf.size()).put(buf.toByteArray()).flip().asReadOnlyBuffer();
+            }
+        }
+        // Entrée vide si rien à garder : pas de relecture ni de recompression à chaque requête
+        CachedFile cf = new CachedFile(body, gz, size, mtime, etag(size, mtime), httpDate(mtime), type);
+        if (cache.putIfAbsent(file, cf) == null) {
+            cachedBytes.addAndGet(memoryOf(cf));
+        }
+    }
+
+    private static long memoryOf(CachedFile cf) {
+        return (cf.body != null ? cf.body.capacity() : 0) + (cf.gzip != null ? cf.gzip.capacity() : 0);
+    }
+
+    private static boolean compressible(String type) {
+        return type.startsWith("text/") || type.contains("javascript") || type.contains("json")
+                || type.contains("xml");
+    }
+
+    /** Accept-Encoding lists gzip (or *) without q=0. */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String item : acceptEncoding.split(",")) {
+            String[] p = item.trim().split(";");
+            String coding = p[0].trim().toLowerCase(Locale.ROOT);
+            if (!coding.equals("gzip") && !coding.equals("x-gzip") && !coding.equals("*")) continue;
+            boolean refused = p.length > 1 && p[1].trim().matches("q=0(\\.0*)?");
+            if (!refused) return true;
+        }
+        return false;
+    }
+
+    private static String gzipEtag(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+
+    private static boolean notModified(Map<String, String> headers, String etag, long mtime) {
+        String inm = headers.get("if-none-match");
+        if (inm != null) {
+            for (String t : inm.split(",")) {
+                t = t.trim();
+                if (t.startsWith("W/")) t = t.substring(2);
+                if (t.equals(etag) || t.equals("*")) return true;
+            }
+            return false;
+        }
+        String ims = headers.get("if-modified-since");
+        if (ims == null) return false;
+        try {
+            return mtime <= ZonedDateTime.parse(ims, HTTP_DATE).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static ByteBuffer headers(String status, String type, long length, String etag, String lastModified,
+                                      boolean close, String extra) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("HTTP/1.1 ").append(status).append("\r\n");
+        sb.append("Server: StaticHttpServer\r\n");
+        if (type != null) sb.append("Content-Type: ").append(type).append("\r\n");
+        if (length >= 0) sb.append("Content-Length: ").append(length).append("\r\n");
+        if (etag != null) sb.append("ETag: ").append(etag).append("\r\n");
+        if (lastModified != null) sb.append("Last-Modified: ").append(lastModified).append("\r\n");
+        sb.append(extra);
+        if (close) sb.append("Connection: close\r\n");
+        sb.append("\r\n");
+        return ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String etag(long size, long mtime) {
+        return "\"" + Long.toHexString(size) + "-" + Long.toHexString(mtime) + "\"";
+    }
+
+    private static String httpDate(long millis) {
+        return HTTP_DATE.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+    }
+
+    private static String contentType(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".html") || name.endsWith(".htm")) return "text/html; charset=utf-8";
+        if (name.endsWith(".txt")) return "text/plain; charset=utf-8";
+        if (name.endsWith(".css")) return "text/css";
+        if (name.endsWith(".js")) return "application/javascript";
+        if (name.endsWith(".json")) return "application/json";
+        if (name.endsWith(".png")) return "image/png";
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) return "image/jpeg";
+        if (name.endsWith(".pdf")) return "application/pdf";
+        return "application/octet-stream";
+    }
+
+    private void printStats() {
+        System.out.println("StaticHttpServer: " + connections.get() + " connections, " + requests.get()
+                + " requests (" + cacheHits.get() + " from memory, " + gzipped.get() + " gzipped, "
+                + notModified.get() + " not modified), "
+                + bodyBytes.get() + " bytes sent, " + cache.size() + " files cached (" + cachedBytes.get() + " bytes)");
+    }
+}
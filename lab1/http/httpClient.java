@@ -1,5 +1,8 @@
 import java.io.*;
 import java.net.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.*;
 
 public class httpClient {
     private String protocol;
@@ -7,15 +10,19 @@ public class httpClient {
     private String filename;
     private String path;
     private int port;
+    private int segments = 1;
 
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.err.println("Usage: java httpClient <URL>");
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java httpClient <URL> [segments]");
             System.err.println("Example: java httpClient http://www.faqs.org/rfcs/rfc2068.html");
             return;
         }
 
         httpClient client = new httpClient();
+        if (args.length == 2) {
+            client.segments = Integer.parseInt(args[1]);
+        }
         client.readUrl(args[0]);
     }
 
@@ -48,8 +55,12 @@ public class httpClient {
             System.out.println("Retrieving file: " + filename);
             System.out.println("Full path: " + this.path);
             
-            // Get the content
-            getURL();
+            // Get the content (several connections in parallel if asked)
+            if (segments > 1) {
+                getURLSegmented();
+            } else {
+                getURL();
+            }
 
         } catch (IllegalArgumentException | MalformedURLException e) {
             System.err.println("Invalid URL format: " + e.getMessage());
@@ -57,19 +68,57 @@ public class httpClient {
     }
 
     private void getURL() {
-        try (Socket socket = new Socket(host, port)) {
+        // Partial download from an earlier run: only ask for the missing bytes
+        Path dest = Paths.get(filename);
+        Path part = Paths.get(filename + ".part");
+        Path meta = Paths.get(filename + ".part.meta");
+
+        // Local cache: a fresh copy needs no network at all, a stale one is revalidated
+        HttpCache cache = HttpCache.getDefault();
+        String url = "http://" + host + ":" + port + path;
+        HttpCache.Entry cached = (cache != null && !Files.exists(part)) ? cache.lookup(url) : null;
+        if (cached != null && cached.isFresh()) {
+            try {
+                cache.copyTo(cached, dest);
+                System.out.println("File saved successfully as: " + filename + " (" + cached.getSize()
+                        + " bytes, fresh in cache, no request sent)");
+                return;
+            } catch (IOException e) {
+                System.err.println("Cache read failed, downloading: " + e.getMessage());
+                cached = null;
+            }
+        }
+
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port))) {
+            Socket socket = channel.socket();
             // Check if socket is open (as requested)
             if (!socket.isConnected()) {
                 throw new IOException("Failed to connect to " + host);
             }
             Thread.sleep(1000); // Pause as requested to observe connection
-            
+
+            long have = Files.exists(part) ? Files.size(part) : 0;
+
             // Send HTTP GET request with full path
             String request = String.format("GET %s HTTP/1.1\r\n", this.path);
             request += String.format("Host: %s\r\n", host);  // Don't include port in Host header
             request += "User-Agent: Mozilla/5.0 JavaHTTPClient/1.0\r\n";
             request += "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n";
             request += "Accept-Language: en-US,en;q=0.5\r\n";
+            if (have == 0 && ContentDecoding.isEnabled()) {
+                // Compressed body decoded on the fly (not when resuming: ranges are on the decoded bytes)
+                request += "Accept-Encoding: " + ContentDecoding.ACCEPT_ENCODING + "\r\n";
+            }
+            if (have > 0) {
+                System.out.println("Resuming at byte " + have);
+                request += String.format("Range: bytes=%d-\r\n", have);
+                if (Files.exists(meta)) {
+                    // Only if the file has not changed since, else the whole file comes back (200)
+                    request += String.format("If-Range: %s\r\n", Files.readString(meta).trim());
+                }
+            } else if (cached != null) {
+                request += HttpCache.conditionalHeaders(cached); // If-None-Match / If-Modified-Since
+            }
             request += "Connection: close\r\n";
             request += "\r\n";
             
@@ -78,40 +127,87 @@ public class httpClient {
             outStream.write(request.getBytes("UTF-8"));
             outStream.flush();
 
-            // Read response
-            InputStream from = socket.getInputStream();
-            
-            // First, read and parse headers to check status code
-            BufferedReader headerReader = new BufferedReader(new InputStreamReader(from));
-            String statusLine = headerReader.readLine();
-            if (statusLine == null || !statusLine.contains("200 OK")) {
-                System.err.println("Error: Server returned " + (statusLine != null ? statusLine : "no response"));
+            // Read response: status line, headers and body parsed from the same
+            // byte buffer (nothing lost between headers and body)
+            HttpResponseParser response = new HttpResponseParser(channel);
+            if (!response.readHeaders()) {
+                System.err.println("Error: Server returned no response");
                 return;
             }
-
-            // Skip remaining headers
-            String line;
-            while ((line = headerReader.readLine()) != null && !line.isEmpty()) {
-                // Skip headers
+            if (response.getStatus() == 416 && have > 0 && SegmentedDownloader.totalLength(response) == have) {
+                Files.move(part, dest, StandardCopyOption.REPLACE_EXISTING); // déjà complet
+                Files.deleteIfExists(meta);
+                System.out.println("File saved successfully as: " + filename + " (" + have + " bytes)");
+                return;
+            }
+            if (response.getStatus() == 304 && cached != null) {
+                cache.revalidated(cached, response.getHeaders());
+                cache.copyTo(cached, dest);
+                System.out.println("File saved successfully as: " + filename + " (" + cached.getSize()
+                        + " bytes, not modified, from cache)");
+                return;
+            }
+            if (!response.isSuccess()) {
+                System.err.println("Error: Server returned " + response.getStatusLine());
+                return;
             }
 
-            // Now read the body and save to file
-            try (FileOutputStream out = new FileOutputStream(filename)) {
-                byte[] buf = new byte[4096];
-                int bytes_read;
-                
-                // Read the body directly from the same input stream
-                while ((bytes_read = from.read(buf)) != -1) {
-                    out.write(buf, 0, bytes_read);
+            // Body: Content-Length, chunked or until close, socket -> file through a FileChannel.
+            // Written into .part, renamed once complete: an interrupted download can be resumed.
+            String encoding = response.getHeader("Content-Encoding");
+            boolean encoded = ContentDecoding.isEncoded(encoding);
+            if (encoded && response.getStatus() == 206) {
+                System.err.println("Error: compressed partial response, cannot resume");
+                return;
+            }
+            try (FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                if (response.getStatus() == 206 && SegmentedDownloader.rangeStart(response) == have) {
+                    System.out.println("Server sent the missing part: " + response.getHeader("Content-Range"));
+                } else {
+                    have = 0; // réponse complète : on repart de zéro
+                    out.truncate(0);
+                    String validator = SegmentedDownloader.validatorOf(response);
+                    if (validator != null) {
+                        Files.writeString(meta, validator);
+                    } else {
+                        Files.deleteIfExists(meta);
+                    }
+                }
+                long size;
+                if (encoded) {
+                    // gzip / deflate : décompressé au fil de l'eau dans le fichier
+                    size = ContentDecoding.decodeTo(encoding, response.bodyStream(), out, 0);
+                } else {
+                    size = have + response.transferBody(out, have);
+                }
+                Files.move(part, dest, StandardCopyOption.REPLACE_EXISTING);
+                Files.deleteIfExists(meta);
+                if (cache != null && response.getStatus() == 200) {
+                    cache.store(url, response.getHeaders(), dest);
                 }
-                
-                System.out.println("File saved successfully as: " + filename);
+                System.out.println("File saved successfully as: " + filename + " (" + size + " bytes"
+                        + (encoded ? ", " + ContentDecoding.describe(encoding, response.getBodyBytesRead(), size) : "")
+                        + ")");
             }
 
         } catch (IOException e) {
             System.err.println("Error during connection or I/O: " + e.getMessage());
+            if (Files.exists(part)) {
+                System.err.println("Partial file kept as " + part + ", run again to resume");
+            }
         } catch (InterruptedException e) {
             System.err.println("Sleep interrupted: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private void getURLSegmented() {
+        long start = System.nanoTime();
+        try {
+            long size = new SegmentedDownloader(host, port, path, Paths.get(filename)).download(segments);
+            double s = (System.nanoTime() - start) / 1e9;
+            System.out.printf("File saved successfully as: %s (%d bytes, %.2f MB/s)%n", filename, size, size / s / 1e6);
+        } catch (IOException e) {
+            System.err.println("Error during connection or I/O: " + e.getMessage());
+        }
+    }
+}
@@ -1,8 +1,13 @@
 import java.io.*;
 import java.net.*;
 import java.net.http.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 public class httpClientModern {
     private String protocol;
@@ -12,8 +17,13 @@ public class httpClientModern {
     private int port;
 
     public static void main(String[] args) {
+        if (args.length >= 1 && args[0].equals("--batch")) {
+            batch(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         if (args.length != 1) {
             System.err.println("Usage: java httpClientModern <URL>");
+            System.err.println("       java httpClientModern --batch [-n maxInFlight] [-o outDir] url... | @file");
             System.err.println("Example: java httpClientModern http://www.faqs.org/rfcs/rfc2068.html");
             return;
         }
@@ -60,35 +70,143 @@ public class httpClientModern {
     }
 
     private void getURL() {
+        // Downloaded into .part, resumed with a Range request after a failure
+        // instead of starting again from scratch
+        Path dest = Paths.get(filename);
+        Path part = Paths.get(filename + ".part");
+        Path meta = Paths.get(filename + ".part.meta"); // validateur pour If-Range, comme httpClient
+
+        // Local cache (shared with httpClient): fresh = no request, stale = revalidated
+        HttpCache cache = HttpCache.getDefault();
+        String url = "http://" + host + ":" + port + path;
+        HttpCache.Entry cached = (cache != null && !Files.exists(part)) ? cache.lookup(url) : null;
+        if (cached != null && cached.isFresh()) {
+            try {
+                cache.copyTo(cached, dest);
+                System.out.println("File saved successfully as: " + filename + " (" + cached.getSize()
+                    + " bytes, fresh in cache, no request sent)");
+                return;
+            } catch (IOException e) {
+                System.err.println("Cache read failed, downloading: " + e.getMessage());
+                cached = null;
+            }
+        }
+
         try {
-            // Create an HTTP client with timeout and redirect following
-            HttpClient client = HttpClient.newBuilder()
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .connectTimeout(Duration.ofSeconds(20))
-                .build();
-
-            // Create the HTTP request
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(new URI(protocol + "://" + host + 
-                     (port != 80 ? ":" + port : "") + path))
-                .header("User-Agent", "Mozilla/5.0 JavaHTTPClient/1.0")
-                .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
-                .GET()
-                .build();
-
-            // Send the request and get response
-            HttpResponse<Path> response = client.send(request, 
-                HttpResponse.BodyHandlers.ofFile(Paths.get(filename)));
-
-            // Check response status
-            int statusCode = response.statusCode();
-            if (statusCode == 200) {
-                System.out.println("File saved successfully as: " + filename);
-            } else {
-                System.err.println("Error: Server returned HTTP/" + 
-                    response.version() + " " + statusCode);
-                // Delete the file if it was created but we got an error
-                Files.deleteIfExists(Paths.get(filename));
+            HttpClient client = newClient();
+
+            URI uri = new URI(protocol + "://" + host + (port != 80 ? ":" + port : "") + path);
+            long[] wire = {0}; // taille compressée du corps
+
+            for (int attempt = 1; ; attempt++) {
+                long have = Files.exists(part) ? Files.size(part) : 0;
+
+                // Create the HTTP request
+                HttpRequest.Builder builder = HttpRequest.newBuilder()
+                    .uri(uri)
+                    .header("User-Agent", "Mozilla/5.0 JavaHTTPClient/1.0")
+                    .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
+                    .GET();
+                if (have == 0 && ContentDecoding.isEnabled()) {
+                    // HttpClient ne décompresse pas lui-même : fait par le BodyHandler
+                    builder.header("Accept-Encoding", ContentDecoding.ACCEPT_ENCODING);
+                }
+                if (have > 0) {
+                    System.out.println("Resuming at byte " + have);
+                    builder.header("Range", "bytes=" + have + "-");
+                    if (Files.exists(meta)) {
+                        // Only if the file has not changed since, else the whole file comes back (200)
+                        builder.header("If-Range", Files.readString(meta).trim());
+                    }
+                } else if (cached != null) {
+                    if (cached.getEtag() != null) builder.header("If-None-Match", cached.getEtag());
+                    if (cached.getLastModified() != null) builder.header("If-Modified-Since", cached.getLastModified());
+                }
+
+                // 206: the body is appended to the .part; another 2xx replaces it;
+                // any other status (304, 416, errors) leaves the .part untouched.
+                // ofFile writes through a FileChannel, a compressed body is decoded
+                // into the .part when the response's Supplier is called.
+                HttpResponse.BodyHandler<Supplier<Path>> handler = info -> {
+                    if (info.statusCode() / 100 != 2) {
+                        // page d'erreur jetée : elle ne doit pas écraser les octets déjà reçus
+                        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.discarding(),
+                            v -> () -> part);
+                    }
+                    if (info.statusCode() == 206) {
+                        return fileSubscriber(info, part, wire,
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    }
+                    if (info.statusCode() / 100 == 2) {
+                        // Réponse complète : son validateur survit à l'arrêt du client
+                        HttpHeaders h = info.headers();
+                        String validator = h.firstValue("ETag").filter(v -> !v.startsWith("W/"))
+                            .or(() -> h.firstValue("Last-Modified"))
+                            .orElse(null);
+                        try {
+                            if (validator != null) {
+                                Files.writeString(meta, validator);
+                            } else {
+                                Files.deleteIfExists(meta);
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                    return fileSubscriber(info, part, wire,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                };
+
+                try {
+                    // Send the request and get response
+                    HttpResponse<Supplier<Path>> response = client.send(builder.build(), handler);
+                    String encoding = response.headers().firstValue("Content-Encoding").orElse(null);
+                    boolean encoded = ContentDecoding.isEncoded(encoding);
+                    response.body().get(); // corps compressé : décodage ici, en flux
+
+                    // Check response status (any 2xx)
+                    int statusCode = response.statusCode();
+                    if (statusCode == 206 && !response.headers().firstValue("Content-Range")
+                            .orElse("").startsWith("bytes " + have + "-")) {
+                        throw new IOException("unexpected Content-Range, restarting");
+                    }
+                    if (statusCode == 416 && have > 0 && response.headers().firstValue("Content-Range")
+                            .orElse("").equals("bytes */" + have)) {
+                        Files.move(part, dest, StandardCopyOption.REPLACE_EXISTING); // déjà complet
+                        Files.deleteIfExists(meta);
+                        System.out.println("File saved successfully as: " + filename + " (" + have + " bytes)");
+                    } else if (statusCode == 304 && cached != null) {
+                        cache.revalidated(cached, lowerCaseHeaders(response.headers()));
+                        cache.copyTo(cached, dest);
+                        System.out.println("File saved successfully as: " + filename + " (" + cached.getSize()
+                            + " bytes, not modified, from cache)");
+                    } else if (statusCode / 100 == 2) {
+                        Files.move(part, dest, StandardCopyOption.REPLACE_EXISTING);
+                        Files.deleteIfExists(meta);
+                        if (cache != null && statusCode == 200) {
+                            cache.store(url, lowerCaseHeaders(response.headers()), dest);
+                        }
+                        long size = Files.size(dest);
+                        System.out.println("File saved successfully as: " + filename
+                            + " (" + size + " bytes" + (statusCode == 206 ? ", resumed" : "")
+                            + (encoded ? ", " + ContentDecoding.describe(encoding, wire[0], size) : "") + ")");
+                    } else {
+                        // The .part (if any) is kept: a later run resumes it
+                        System.err.println("Error: Server returned HTTP/" +
+                            response.version() + " " + statusCode);
+                    }
+                    return;
+                } catch (UncheckedIOException e) {
+                    if (attempt >= 3) throw e.getCause();
+                    System.err.println("Attempt " + attempt + " failed: " + e.getCause().getMessage());
+                } catch (IOException e) {
+                    if (attempt >= 3) throw e;
+                    System.err.println("Attempt " + attempt + " failed: " + e.getMessage());
+                    if (e.getMessage() != null && e.getMessage().startsWith("unexpected Content-Range")) {
+                        Files.deleteIfExists(part);
+                        Files.deleteIfExists(meta);
+                    }
+                }
             }
 
         } catch (IOException e) {
@@ -100,4 +218,185 @@ public class httpClientModern {
             System.err.println("Invalid URI syntax: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Body written to file: as is through ofFile, or, when the response has a
+     * Content-Encoding, read as a stream and decompressed into the file by the
+     * returned Supplier (blocking reads, so not in the client's own threads).
+     * wire[0] receives the compressed size. A compressed 206 is refused: its
+     * range is on the compressed bytes.
+     */
+    private static HttpResponse.BodySubscriber<Supplier<Path>> fileSubscriber(HttpResponse.ResponseInfo info,
+            Path file, long[] wire, OpenOption... options) {
+        String encoding = info.headers().firstValue("Content-Encoding").orElse(null);
+        if (!ContentDecoding.isEncoded(encoding)) {
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofFile(file, options),
+                p -> () -> p);
+        }
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(), in -> () -> {
+            try (ContentDecoding.CountingInputStream counted = new ContentDecoding.CountingInputStream(in);
+                 FileChannel out = FileChannel.open(file, options)) {
+                if (info.statusCode() == 206) throw new IOException("compressed partial response");
+                ContentDecoding.decodeTo(encoding, counted, out, 0);
+                wire[0] = counted.getCount();
+                return file;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /** First value of each header, names in lower case (as HttpCache expects). */
+    private static Map<String, String> lowerCaseHeaders(HttpHeaders headers) {
+        Map<String, String> m = new HashMap<>();
+        headers.map().forEach((name, values) -> {
+            if (!values.isEmpty()) m.put(name.toLowerCase(Locale.ROOT), values.get(0));
+        });
+        return m;
+    }
+
+    /** HTTP client with timeout and redirect following (HTTP/2 when the server offers it). */
+    private static HttpClient newClient() {
+        return HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(20))
+            .build();
+    }
+
+    // ================= Batch mode =================
+
+    /**
+     * Many URLs with one shared HttpClient (its connections are reused, or
+     * multiplexed with HTTP/2), sendAsync with at most maxInFlight requests
+     * at a time, each body streamed to its own file. Prints latency
+     * percentiles and total throughput.
+     */
+    private static void batch(String[] args) {
+        int maxInFlight = 16;
+        Path outDir = Paths.get("downloads");
+        List<String> urls = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-n")) {
+                    maxInFlight = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-o")) {
+                    outDir = Paths.get(args[++i]);
+                } else if (args[i].startsWith("@")) {
+                    for (String line : Files.readAllLines(Paths.get(args[i].substring(1)))) {
+                        if (!line.isBlank() && !line.startsWith("#")) urls.add(line.trim());
+                    }
+                } else {
+                    urls.add(args[i]);
+                }
+            }
+            if (urls.isEmpty()) {
+                System.err.println("Usage: java httpClientModern --batch [-n maxInFlight] [-o outDir] url... | @file");
+                return;
+            }
+            Files.createDirectories(outDir);
+        } catch (IOException e) {
+            System.err.println("Error reading arguments: " + e.getMessage());
+            return;
+        }
+
+        HttpClient client = newClient();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long[] latencies = new long[urls.size()];
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong wireBytes = new AtomicLong();
+        ExecutorService decoders = Executors.newCachedThreadPool(); // au plus maxInFlight threads
+        AtomicLong failures = new AtomicLong();
+        Map<HttpClient.Version, AtomicLong> versions = new ConcurrentHashMap<>();
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < urls.size(); i++) {
+                int index = i;
+                HttpRequest request;
+                try {
+                    HttpRequest.Builder builder = HttpRequest.newBuilder(new URI(urls.get(i)))
+                        .header("User-Agent", "Mozilla/5.0 JavaHTTPClient/1.0")
+                        .timeout(Duration.ofSeconds(60))
+                        .GET();
+                    if (ContentDecoding.isEnabled()) {
+                        builder.header("Accept-Encoding", ContentDecoding.ACCEPT_ENCODING);
+                    }
+                    request = builder.build();
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    System.err.println("Invalid URL " + urls.get(i) + ": " + e.getMessage());
+                    failures.incrementAndGet();
+                    latencies[index] = -1;
+                    continue;
+                }
+                Path dest = outDir.resolve(String.format("%05d_%s", i, fileNameOf(request.uri())));
+
+                inFlight.acquire(); // pas plus de maxInFlight requêtes en vol
+                long sent = System.nanoTime();
+                long[] wire = {-1};
+                pending.add(client.sendAsync(request, info -> fileSubscriber(info, dest, wire,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+                    .thenApplyAsync(response -> {
+                        response.body().get(); // décompression éventuelle, hors des threads du client
+                        return response;
+                    }, decoders)
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        inFlight.release();
+                        if (error != null) {
+                            failures.incrementAndGet();
+                            System.err.println("Error with " + request.uri() + ": " + error.getMessage());
+                            return;
+                        }
+                        versions.computeIfAbsent(response.version(), v -> new AtomicLong()).incrementAndGet();
+                        if (response.statusCode() / 100 != 2) {
+                            failures.incrementAndGet();
+                            System.err.println("Error: " + request.uri() + " returned " + response.statusCode());
+                            try {
+                                Files.deleteIfExists(dest);
+                            } catch (IOException ignored) {
+                            }
+                            return;
+                        }
+                        try {
+                            long size = Files.size(dest);
+                            bytes.addAndGet(size);
+                            wireBytes.addAndGet(wire[0] >= 0 ? wire[0] : size);
+                        } catch (IOException ignored) {
+                        }
+                    }));
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).handle((r, e) -> null).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Batch interrupted");
+            return;
+        } finally {
+            decoders.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] done = Arrays.stream(latencies).filter(l -> l >= 0).sorted().toArray();
+        double s = elapsed / 1e9;
+        System.out.printf("Batch: %d URLs, %d failed, %d body bytes (%d on the wire) in %.3f s -> %.0f req/s, %.2f MB/s (max %d in flight)%n",
+            urls.size(), failures.get(), bytes.get(), wireBytes.get(), s, urls.size() / s, bytes.get() / s / 1e6,
+            maxInFlight);
+        if (done.length > 0) {
+            System.out.printf("Latency ms: p50 %.2f, p90 %.2f, p99 %.2f, max %.2f | versions %s%n",
+                percentile(done, 50), percentile(done, 90), percentile(done, 99),
+                done[done.length - 1] / 1e6, versions);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int i = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))] / 1e6;
+    }
+
+    private static String fileNameOf(URI uri) {
+        String p = uri.getPath() == null ? "" : uri.getPath();
+        String last = p.substring(p.lastIndexOf('/') + 1);
+        return last.isEmpty() ? "index.html" : last;
+    }
+}
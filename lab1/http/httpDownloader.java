@@ -0,0 +1,273 @@
+import java.io.*;
+import java.net.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads many URLs over persistent HTTP/1.1 connections.
+ *
+ * - responses are read with HttpResponseParser (Content-Length / chunked);
+ * - URLs are grouped by host:port; each host gets a small pool of connections
+ *   (-c), all hosts are downloaded at the same time;
+ * - each connection sends up to -p GET requests at once (pipelining) and then
+ *   reads the responses in order;
+ * - a connection closed by the server (Connection: close, error) is reopened
+ *   and the unanswered requests are sent again (3 attempts per URL);
+ * - --oneshot runs the same list the httpClient way: one connection per URL with
+ *   "Connection: close", one after the other (without the 1 s pause), for comparison.
+ *
+ * Usage: java httpDownloader [-c connsPerHost] [-p depth] [-o outDir|-] [-r repeat] [--oneshot] url... | @file
+ * With "-o -" the bodies are read and discarded (measures the network side only).
+ */
+public class httpDownloader {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final int connsPerHost;
+    private final int depth;
+    private final Path outDir; // null = bodies discarded
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bodyBytes = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /** One URL to fetch. */
+    private static final class Target {
+        final String host;
+        final int port;
+        final String path;
+        final String url;
+        int attempts;
+
+        Target(String url) throws MalformedURLException {
+            URL u = URI.create(url).toURL();
+            if (!"http".equalsIgnoreCase(u.getProtocol())) {
+                throw new MalformedURLException("Only HTTP protocol is supported: " + url);
+            }
+            this.url = url;
+            this.host = u.getHost();
+            this.port = (u.getPort() != -1) ? u.getPort() : 80;
+            String p = u.getFile(); // chemin + query
+            this.path = p.isEmpty() ? "/" : p;
+        }
+
+        String hostKey() {
+            return host + ":" + port;
+        }
+    }
+
+    public httpDownloader(int connsPerHost, int depth, Path outDir) {
+        this.connsPerHost = Math.max(1, connsPerHost);
+        this.depth = Math.max(1, depth);
+        this.outDir = outDir;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int conns = 2, depth = 8, repeat = 1;
+        String out = "downloads";
+        boolean oneshot = false;
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-c": conns = Integer.parseInt(args[++i]); break;
+                case "-p": depth = Integer.parseInt(args[++i]); break;
+                case "-o": out = args[++i]; break;
+                case "-r": repeat = Integer.parseInt(args[++i]); break;
+                case "--oneshot": oneshot = true; break;
+                default:
+                    if (args[i].startsWith("@")) {
+                        for (String line : Files.readAllLines(Paths.get(args[i].substring(1)))) {
+                            if (!line.isBlank() && !line.startsWith("#")) urls.add(line.trim());
+                        }
+                    } else {
+                        urls.add(args[i]);
+                    }
+            }
+        }
+        if (urls.isEmpty()) {
+            System.err.println("Usage: java httpDownloader [-c connsPerHost] [-p depth] [-o outDir|-] "
+                    + "[-r repeat] [--oneshot] url... | @file");
+            System.err.println("Example: java httpDownloader -c 2 -p 8 http://localhost:8081/gen/10000");
+            return;
+        }
+
+        List<Target> targets = new ArrayList<>();
+        for (int r = 0; r < repeat; r++) {
+            for (String u : urls) targets.add(new Target(u));
+        }
+
+        Path outDir = "-".equals(out) ? null : Paths.get(out);
+        httpDownloader d = new httpDownloader(conns, depth, outDir);
+        long start = System.nanoTime();
+        if (oneshot) {
+            d.downloadOneShot(targets);
+        } else {
+            d.download(targets);
+        }
+        d.printStats(oneshot ? "one-shot" : "keep-alive c=" + conns + " p=" + depth, System.nanoTime() - start);
+    }
+
+    /** Pooled, pipelined download; returns when every URL is done or failed. */
+    public void download(List<Target> targets) throws InterruptedException {
+        Map<String, Deque<Target>> byHost = new LinkedHashMap<>();
+        for (Target t : targets) {
+            byHost.computeIfAbsent(t.hostKey(), k -> new ConcurrentLinkedDeque<>()).add(t);
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (Map.Entry<String, Deque<Target>> e : byHost.entrySet()) {
+            Deque<Target> queue = e.getValue();
+            int n = Math.min(connsPerHost, queue.size());
+            for (int i = 0; i < n; i++) {
+                Thread t = new Thread(() -> connectionLoop(queue), "conn-" + e.getKey() + "-" + i);
+                threads.add(t);
+                t.start();
+            }
+        }
+        for (Thread t : threads) t.join();
+    }
+
+    /** One persistent connection: take a batch, send it, read the answers, repeat. */
+    private void connectionLoop(Deque<Target> queue) {
+        Socket socket = null;
+        HttpResponseParser in = null;
+        OutputStream out = null;
+        List<Target> batch = new ArrayList<>(depth);
+        try {
+            while (true) {
+                batch.clear();
+                Target t;
+                while (batch.size() < depth && (t = queue.poll()) != null) batch.add(t);
+                if (batch.isEmpty()) return;
+
+                int done = 0;
+                try {
+                    if (socket == null) {
+                        Target first = batch.get(0);
+                        SocketChannel channel = SocketChannel.open(new InetSocketAddress(first.host, first.port));
+                        socket = channel.socket();
+                        socket.setTcpNoDelay(true);
+                        in = new HttpResponseParser(channel);
+                        out = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+                        connectionsOpened.incrementAndGet();
+                    }
+                    // Toutes les requêtes du lot partent ensemble
+                    for (Target b : batch) out.write(request(b, false));
+                    out.flush();
+
+                    boolean keepAlive = true;
+                    while (done < batch.size() && keepAlive) {
+                        keepAlive = readResponse(in, batch.get(done));
+                        done++;
+                    }
+                    if (!keepAlive) {
+                        requeue(queue, batch.subList(done, batch.size()), false);
+                        socket.close();
+                        socket = null;
+                    }
+                } catch (IOException e) {
+                    // Connexion perdue : les requêtes sans réponse repartent sur une nouvelle
+                    requeue(queue, batch.subList(done, batch.size()), true);
+                    closeQuietly(socket);
+                    socket = null;
+                }
+            }
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    private void requeue(Deque<Target> queue, List<Target> unanswered, boolean failed) {
+        for (int i = unanswered.size() - 1; i >= 0; i--) {
+            Target t = unanswered.get(i);
+            if (failed && ++t.attempts >= MAX_ATTEMPTS) {
+                failures.incrementAndGet();
+                System.err.println("Giving up on " + t.url);
+                continue;
+            }
+            queue.addFirst(t); // garde l'ordre d'origine
+        }
+    }
+
+    /** Baseline: what httpClient does, one fresh connection per URL. */
+    public void downloadOneShot(List<Target> targets) {
+        for (Target t : targets) {
+            try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(t.host, t.port))) {
+                connectionsOpened.incrementAndGet();
+                OutputStream out = channel.socket().getOutputStream();
+                out.write(request(t, true));
+                out.flush();
+                readResponse(new HttpResponseParser(channel), t);
+            } catch (IOException e) {
+                failures.incrementAndGet();
+                System.err.println("Error with " + t.url + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static byte[] request(Target t, boolean close) {
+        String request = String.format("GET %s HTTP/1.1\r\n", t.path);
+        request += String.format("Host: %s\r\n", t.port == 80 ? t.host : t.host + ":" + t.port);
+        request += "User-Agent: Mozilla/5.0 JavaHTTPClient/1.0\r\n";
+        request += "Accept: */*\r\n";
+        request += close ? "Connection: close\r\n" : "";
+        request += "\r\n";
+        return request.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Read one response and store its body.
+     * Returns false if the connection cannot be reused afterwards.
+     */
+    private boolean readResponse(HttpResponseParser in, Target t) throws IOException {
+        if (!in.readHeaders()) throw new EOFException("connection closed before response");
+
+        long n;
+        if (in.isSuccess() && outDir != null) {
+            Path dest = destination(t);
+            Files.createDirectories(dest.getParent());
+            try (FileChannel file = FileChannel.open(dest, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                n = in.transferBody(file, 0); // socket -> buffer direct -> fichier
+            }
+        } else {
+            n = in.skipBody();
+        }
+
+        requests.incrementAndGet();
+        if (in.isSuccess()) {
+            bodyBytes.addAndGet(n);
+        } else {
+            failures.incrementAndGet();
+            System.err.println("Error: " + t.url + " returned " + in.getStatusLine());
+        }
+        return in.isKeepAlive();
+    }
+
+    private Path destination(Target t) {
+        String name = t.path.substring(1).replaceAll("[/?&=]", "_");
+        if (name.isEmpty()) name = "index.html";
+        return outDir.resolve(t.host + "_" + t.port).resolve(name);
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void printStats(String mode, long elapsedNanos) {
+        double s = elapsedNanos / 1e9;
+        System.out.printf("%s: %d requests, %d body bytes in %.3f s -> %.0f req/s, %.2f MB/s, "
+                        + "%d connections, %d failures%n",
+                mode, requests.get(), bodyBytes.get(), s, requests.get() / s,
+                bodyBytes.get() / s / 1e6, connectionsOpened.get(), failures.get());
+    }
+}
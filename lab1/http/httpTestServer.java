@@ -0,0 +1,365 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small local HTTP/1.1 server used as a test fixture for the clients of this lab.
+ *
+ * - persistent connections (keep-alive) and pipelined requests, answered in order;
+ * - "Connection: close" and HTTP/1.0 requests close after the response;
+ * - files are served from a root directory, and /gen/<n> returns n generated bytes
+ *   (no disk on the server side, useful for benchmarks); /chunked/<n> sends them
+ *   with Transfer-Encoding: chunked;
+ * - single-range requests (Range / If-Range on the ETag) get 206 Partial Content,
+ *   and /gen/<n>?cut=<k> drops the connection after k body bytes (resume tests);
+ * - conditional GETs (If-None-Match / If-Modified-Since) get 304 Not Modified,
+ *   and ?maxage=<s> adds Cache-Control: max-age (cache tests);
+ * - several consecutive ports can be opened to play the role of several hosts;
+ * - an optional delay before each response simulates a slow server.
+ *
+ * Responses are buffered and only flushed when no other request is already
+ * waiting on the connection, so a pipelined batch goes out in few segments.
+ */
+public class httpTestServer {
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final int firstPort;
+    private final int hosts;
+    private final Path root;
+    private final long delayMs;
+
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    public httpTestServer(int firstPort, int hosts, Path root, long delayMs) {
+        this.firstPort = firstPort;
+        this.hosts = hosts;
+        this.root = root.toAbsolutePath().normalize();
+        this.delayMs = delayMs;
+    }
+
+    public static void main(String[] args) throws IOException {
+        // java httpTestServer [port] [root] [delayMs] [hosts]
+        int port = (args.length >= 1) ? Integer.parseInt(args[0]) : 8081;
+        Path root = Paths.get((args.length >= 2) ? args[1] : ".");
+        long delayMs = (args.length >= 3) ? Long.parseLong(args[2]) : 0;
+        int hosts = (args.length >= 4) ? Integer.parseInt(args[3]) : 1;
+
+        httpTestServer server = new httpTestServer(port, hosts, root, delayMs);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::printStats));
+        server.start();
+    }
+
+    public void start() throws IOException {
+        for (int i = 0; i < hosts; i++) {
+            ServerSocket ss = new ServerSocket(firstPort + i, 200);
+            Thread t = new Thread(() -> acceptLoop(ss), "accept-" + (firstPort + i));
+            t.start();
+        }
+        System.out.println("httpTestServer on ports " + firstPort + ".." + (firstPort + hosts - 1)
+                + ", root " + root + ", delay " + delayMs + " ms");
+    }
+
+    private void acceptLoop(ServerSocket ss) {
+        while (true) {
+            try {
+                Socket s = ss.accept();
+                connections.incrementAndGet();
+                workers.execute(() -> serve(s));
+            } catch (IOException e) {
+                System.err.println("accept failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(s.getInputStream(), 16 * 1024);
+            OutputStream out = new BufferedOutputStream(s.getOutputStream(), 64 * 1024);
+
+            String requestLine;
+            while ((requestLine = readLine(in)) != null) {
+                if (requestLine.isEmpty()) continue; // CRLF en trop entre deux requêtes
+                Map<String, String> headers = new HashMap<>();
+                String line;
+                while ((line = readLine(in)) != null && !line.isEmpty()) {
+                    int colon = line.indexOf(':');
+                    if (colon > 0) {
+                        headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                                line.substring(colon + 1).trim());
+                    }
+                }
+                boolean close = requestLine.endsWith("HTTP/1.0")
+                        || "close".equalsIgnoreCase(headers.get("connection"));
+                requests.incrementAndGet();
+                if (delayMs > 0) Thread.sleep(delayMs);
+
+                String[] parts = requestLine.split(" ");
+                if (parts.length < 3 || !(parts[0].equals("GET") || parts[0].equals("HEAD"))) {
+                    respond(out, "400 Bad Request", "text/plain", "bad request\n".getBytes(), false, true);
+                    out.flush();
+                    return;
+                }
+                if (!handle(out, parts[0].equals("HEAD"), parts[1], headers, close)) {
+                    out.flush();
+                    return; // réponse volontairement coupée (?cut=)
+                }
+
+                // Ne pousse sur le réseau que quand le lot pipeliné est traité
+                if (close || in.available() == 0) out.flush();
+                if (close) return;
+            }
+        } catch (IOException e) {
+            // client parti
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Answer one request; false if the body was cut on purpose and the
+     * connection must be closed.
+     */
+    private boolean handle(OutputStream out, boolean head, String target, Map<String, String> headers,
+                           boolean close) throws IOException {
+        String path = target;
+        Map<String, String> params = new HashMap<>();
+        int q = path.indexOf('?');
+        if (q >= 0) {
+            for (String kv : path.substring(q + 1).split("&")) {
+                int eq = kv.indexOf('=');
+                if (eq > 0) params.put(kv.substring(0, eq), kv.substring(eq + 1));
+            }
+            path = path.substring(0, q);
+        }
+        // ?maxage=<s> : Cache-Control: max-age (tests de cache)
+        String cacheControl = params.containsKey("maxage")
+                ? "Cache-Control: max-age=" + Long.parseLong(params.get("maxage")) + "\r\n" : "";
+
+        boolean chunked = path.startsWith("/chunked/");
+        if (path.startsWith("/gen/") || chunked) {
+            long n;
+            try {
+                n = Long.parseLong(path.substring(path.indexOf('/', 1) + 1));
+            } catch (NumberFormatException e) {
+                respond(out, "404 Not Found", "text/plain", "not found\n".getBytes(), head, close);
+                return true;
+            }
+            // ?cut=<k> : la connexion est fermée après k octets de corps (tests de reprise)
+            long cut = params.containsKey("cut") ? Long.parseLong(params.get("cut")) : Long.MAX_VALUE;
+            String etag = "\"gen-" + n + "\"";
+            if (notModified(out, headers, etag, -1, cacheControl, close)) return true;
+            long[] range = chunked ? null : range(headers, etag, n);
+            if (range != null && range[0] < 0) {
+                rangeNotSatisfiable(out, n, close);
+                return true;
+            }
+            long from = (range != null) ? range[0] : 0;
+            long count = (range != null) ? range[1] - range[0] + 1 : n;
+            writeHeaders(out, range != null ? "206 Partial Content" : "200 OK", "application/octet-stream",
+                    chunked ? -1 : count, close,
+                    "ETag: " + etag + "\r\n" + (chunked ? "" : "Accept-Ranges: bytes\r\n") + cacheControl
+                            + (range != null ? contentRange(range, n) : ""));
+            if (head) return true;
+            return writeGenerated(out, from, count, chunked, cut);
+        }
+
+        Path file = root.resolve(URLDecoder.decode(path.substring(1), StandardCharsets.UTF_8)).normalize();
+        if (Files.isDirectory(file)) file = file.resolve("index.html");
+        if (!file.startsWith(root) || !Files.isRegularFile(file)) {
+            respond(out, "404 Not Found", "text/plain", "not found\n".getBytes(), head, close);
+            return true;
+        }
+        long size = Files.size(file);
+        long mtime = Files.getLastModifiedTime(file).toMillis() / 1000 * 1000; // précision HTTP : la seconde
+        String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(mtime) + "\"";
+        if (notModified(out, headers, etag, mtime, cacheControl, close)) return true;
+        long[] range = range(headers, etag, size);
+        if (range != null && range[0] < 0) {
+            rangeNotSatisfiable(out, size, close);
+            return true;
+        }
+        long from = (range != null) ? range[0] : 0;
+        long count = (range != null) ? range[1] - range[0] + 1 : size;
+        writeHeaders(out, range != null ? "206 Partial Content" : "200 OK", contentType(file), count, close,
+                "ETag: " + etag + "\r\nLast-Modified: " + httpDate(mtime) + "\r\nAccept-Ranges: bytes\r\n"
+                        + cacheControl + (range != null ? contentRange(range, size) : ""));
+        if (!head) {
+            try (InputStream fin = Files.newInputStream(file)) {
+                fin.skipNBytes(from);
+                byte[] b = new byte[64 * 1024];
+                long left = count;
+                while (left > 0) {
+                    int r = fin.read(b, 0, (int) Math.min(b.length, left));
+                    if (r == -1) throw new EOFException(file + " shrank");
+                    out.write(b, 0, r);
+                    left -= r;
+                }
+            }
+            bytesSent.addAndGet(count);
+        }
+        return true;
+    }
+
+    /**
+     * Conditional GET: 304 if If-None-Match matches the ETag or, without
+     * If-None-Match, if the resource is not newer than If-Modified-Since.
+     */
+    private boolean notModified(OutputStream out, Map<String, String> headers, String etag, long mtime,
+                                String cacheControl, boolean close) throws IOException {
+        String inm = headers.get("if-none-match");
+        boolean match;
+        if (inm != null) {
+            match = inm.trim().equals("*") || Arrays.stream(inm.split(","))
+                    .map(String::trim).map(t -> t.startsWith("W/") ? t.substring(2) : t)
+                    .anyMatch(etag::equals);
+        } else {
+            String ims = headers.get("if-modified-since");
+            long since = -1;
+            if (ims != null && mtime >= 0) {
+                try {
+                    since = ZonedDateTime.parse(ims, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                } catch (DateTimeParseException ignored) {
+                }
+            }
+            match = since >= 0 && mtime <= since;
+        }
+        if (!match) return false;
+        notModified.incrementAndGet();
+        // 304 : pas de corps, ni Content-Length
+        String h = "HTTP/1.1 304 Not Modified\r\nServer: httpTestServer\r\nETag: " + etag + "\r\n"
+                + cacheControl + (close ? "Connection: close\r\n" : "") + "\r\n";
+        out.write(h.getBytes(StandardCharsets.ISO_8859_1));
+        return true;
+    }
+
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+    }
+
+    /**
+     * Single "Range: bytes=a-b" (also a- and -n), honoured only if If-Range
+     * (when present) matches the ETag. Returns null for a full response,
+     * {-1, -1} if unsatisfiable, else {first, last}.
+     */
+    private static long[] range(Map<String, String> headers, String etag, long size) {
+        String r = headers.get("range");
+        if (r == null || !r.startsWith("bytes=") || r.indexOf(',') >= 0) return null;
+        String ifRange = headers.get("if-range");
+        if (ifRange != null && !ifRange.equals(etag)) return null; // la ressource a changé : tout renvoyer
+        String spec = r.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            long first, last;
+            if (dash == 0) { // -n : les n derniers octets
+                long n = Long.parseLong(spec.substring(1));
+                first = Math.max(0, size - n);
+                last = size - 1;
+            } else {
+                first = Long.parseLong(spec.substring(0, dash));
+                last = (dash == spec.length() - 1) ? size - 1 : Math.min(size - 1, Long.parseLong(spec.substring(dash + 1)));
+            }
+            if (first >= size || first > last) return new long[]{-1, -1};
+            return new long[]{first, last};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String contentRange(long[] range, long size) {
+        return "Content-Range: bytes " + range[0] + "-" + range[1] + "/" + size + "\r\n";
+    }
+
+    private void rangeNotSatisfiable(OutputStream out, long size, boolean close) throws IOException {
+        writeHeaders(out, "416 Range Not Satisfiable", "text/plain", 0, close,
+                "Content-Range: bytes */" + size + "\r\n");
+    }
+
+    private void respond(OutputStream out, String status, String type, byte[] body,
+                         boolean head, boolean close) throws IOException {
+        writeHeaders(out, status, type, body.length, close, "");
+        if (!head) {
+            out.write(body);
+            bytesSent.addAndGet(body.length);
+        }
+    }
+
+    private static void writeHeaders(OutputStream out, String status, String type, long length,
+                                     boolean close, String extra) throws IOException {
+        String headers = "HTTP/1.1 " + status + "\r\n"
+                + "Server: httpTestServer\r\n"
+                + "Content-Type: " + type + "\r\n"
+                + (length >= 0 ? "Content-Length: " + length : "Transfer-Encoding: chunked") + "\r\n"
+                + extra
+                + (close ? "Connection: close\r\n" : "")
+                + "\r\n";
+        out.write(headers.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Generated body: the byte at offset p is 'a' + (p % 8192) % 26, so any
+     * range can be produced and checked. Returns false if cut after "cut" bytes.
+     */
+    private boolean writeGenerated(OutputStream out, long from, long count, boolean chunked, long cut)
+            throws IOException {
+        byte[] pattern = new byte[8192 + 8192];
+        for (int i = 0; i < pattern.length; i++) pattern[i] = (byte) ('a' + (i % 8192) % 26);
+        long offset = from;
+        long left = Math.min(count, cut);
+        while (left > 0) {
+            // Tailles de chunk irrégulières pour exercer les parseurs
+            int len = (int) Math.min(chunked ? 1000 + left % 7000 : 8192, left);
+            if (chunked) out.write((Integer.toHexString(len) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.write(pattern, (int) (offset % 8192), len);
+            if (chunked) out.write(CRLF);
+            offset += len;
+            left -= len;
+        }
+        bytesSent.addAndGet(offset - from);
+        if (cut < count) return false;
+        if (chunked) out.write("0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        return true;
+    }
+
+    private static String contentType(Path file) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".html") || name.endsWith(".htm")) return "text/html";
+        if (name.endsWith(".txt")) return "text/plain";
+        return "application/octet-stream";
+    }
+
+    /** One header line, without CRLF; null at end of stream. */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int len = sb.length();
+                if (len > 0 && sb.charAt(len - 1) == '\r') sb.setLength(len - 1);
+                return sb.toString();
+            }
+            sb.append((char) c);
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    private void printStats() {
+        System.out.println("httpTestServer: " + connections.get() + " connections, "
+                + requests.get() + " requests (" + notModified.get() + " not modified), "
+                + bytesSent.get() + " body bytes sent");
+    }
+}
@@ -0,0 +1,77 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Micro-benchmark of the per-message logging cost in a receive loop.
+ *
+ * Each iteration does what UDPServer does for one datagram (decode the bytes
+ * and log "[ip:port] msg"), with three modes:
+ *   off   : no logging at all (upper bound)
+ *   sync  : printf on the receiving thread (old behaviour)
+ *   async : AsyncLogger (ring buffer + background writer); the rate counts
+ *           only the lines accepted, not those dropped on a full ring
+ *
+ * Results go to stderr, log lines to the sink (stdout by default), e.g.
+ *   java LoggingBenchmark 1000000 > /dev/null
+ *   java LoggingBenchmark 1000000 bench.log
+ */
+public class LoggingBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int messages = (args.length >= 1) ? Integer.parseInt(args[0]) : 1_000_000;
+        PrintStream sink = (args.length >= 2)
+                ? new PrintStream(new FileOutputStream(args[1]), false, StandardCharsets.UTF_8)
+                : System.out;
+
+        byte[] datagram = "hello from the logging benchmark".getBytes(StandardCharsets.UTF_8);
+        InetAddress addr = InetAddress.getLoopbackAddress();
+
+        // Warm-up (JIT) puis mesure
+        for (int round = 0; round < 2; round++) {
+            boolean report = (round == 1);
+            run("off", messages, report, () -> {
+                String msg = new String(datagram, 0, datagram.length, StandardCharsets.UTF_8);
+                if (msg.isEmpty()) sink.print(""); // garde le décodage vivant
+            });
+            run("sync", messages, report, () -> {
+                String msg = new String(datagram, 0, datagram.length, StandardCharsets.UTF_8);
+                sink.printf("[%s:%d] %s%n", addr.getHostAddress(), 5000, msg);
+            });
+
+            AsyncLogger logger = new AsyncLogger(sink, AsyncLogger.Level.INFO, 1, 64 * 1024);
+            long elapsed = run("async", messages, false, () -> {
+                if (logger.sampleTraffic()) {
+                    String msg = new String(datagram, 0, datagram.length, StandardCharsets.UTF_8);
+                    logger.info("[%s:%d] %s", addr.getHostAddress(), 5000, msg);
+                }
+            });
+            long dropped = logger.getDroppedCount();
+            long start = System.nanoTime();
+            logger.close(60_000); // vide le ring et arrête le writer de ce tour
+            if (report) {
+                long accepted = messages - dropped;
+                System.err.printf("%-5s: %,d msgs in %d ms -> %,.0f accepted msgs/sec (%,d dropped, ring full)%n",
+                        "async", messages, elapsed / 1_000_000, accepted * 1e9 / elapsed, dropped);
+                System.err.printf("async: writer drained backlog in %d ms%n",
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+        sink.flush();
+    }
+
+    private static long run(String mode, int messages, boolean report, Runnable perMessage) {
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            perMessage.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (report) {
+            System.err.printf("%-5s: %,d msgs in %d ms -> %,.0f msgs/sec%n",
+                    mode, messages, elapsed / 1_000_000, messages * 1e9 / elapsed);
+        }
+        return elapsed;
+    }
+}
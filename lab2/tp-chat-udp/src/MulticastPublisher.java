@@ -0,0 +1,182 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Long-lived multicast publisher for high message rates.
+ *
+ * Small messages are packed into MTU-sized datagrams (one direct buffer,
+ * reused) and the datagrams are paced to a configurable byte rate so a burst
+ * does not overflow the receivers' socket buffers. A partially filled batch
+ * is sent after at most {@code lingerMicros}.
+ *
+ * Datagram layout (read by MulticastSubscriber):
+ *   'B' | batchSeq(4) | count(2) | { len(2) | bytes } * count
+ */
+public class MulticastPublisher implements Closeable {
+    static final byte BATCH_MAGIC = 'B';
+    static final int BATCH_HEADER = 7;
+    static final int DEFAULT_MTU_PAYLOAD = 1472; // 1500 - IP(20) - UDP(8)
+
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+    private static final long MAX_BURST_NANOS = 2_000_000; // crédit max accumulé après une pause
+
+    private final DatagramChannel channel;
+    private final InetSocketAddress group;
+    private final ByteBuffer batch;
+    private final long rateBytesPerSec; // 0 = pas de pacing
+    private final long lingerNanos;
+    private final Thread lingerThread;
+    private volatile boolean running = true;
+
+    // protégés par this
+    private int batchSeq = 0;
+    private int batchCount = 0;
+    private long batchStartNanos;
+    private long nextSendNanos = System.nanoTime();
+
+    // Compteurs de débit
+    private volatile long packetsSent, bytesSent, messagesSent;
+    private final long startNanos = System.nanoTime();
+
+    public MulticastPublisher(String groupIp, int port, NetworkInterface nif,
+                              int mtuPayload, long rateBytesPerSec, long lingerMicros) throws IOException {
+        this.group = new InetSocketAddress(InetAddress.getByName(groupIp), port);
+        this.channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, 1);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, 1 << 20);
+        if (nif != null) {
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, nif);
+        }
+
+        this.batch = ByteBuffer.allocateDirect(mtuPayload);
+        this.rateBytesPerSec = rateBytesPerSec;
+        this.lingerNanos = lingerMicros * 1000;
+        resetBatch();
+
+        this.lingerThread = new Thread(this::lingerLoop, "MulticastPublisher-linger");
+        this.lingerThread.setDaemon(true);
+        this.lingerThread.start();
+    }
+
+    /** Queue one message; sends the current batch first if it would not fit. */
+    public synchronized void publish(byte[] msg, int off, int len) throws IOException {
+        if (len > batch.capacity() - BATCH_HEADER - 2) {
+            throw new IllegalArgumentException("message too large for one datagram: " + len);
+        }
+        if (batch.remaining() < 2 + len) {
+            sendBatch();
+        }
+        if (batchCount == 0) {
+            batchStartNanos = System.nanoTime();
+        }
+        batch.putShort((short) len);
+        batch.put(msg, off, len);
+        batchCount++;
+        messagesSent++;
+    }
+
+    public void publish(byte[] msg) throws IOException {
+        publish(msg, 0, msg.length);
+    }
+
+    /** Send the partially filled batch now. */
+    public synchronized void flush() throws IOException {
+        if (batchCount > 0) sendBatch();
+    }
+
+    private void resetBatch() {
+        batch.clear();
+        batch.put(BATCH_MAGIC).putInt(batchSeq).putShort((short) 0);
+        batchCount = 0;
+    }
+
+    private void sendBatch() throws IOException {
+        batch.putShort(5, (short) batchCount);
+        batch.flip();
+        int size = batch.remaining();
+
+        pace(size);
+        channel.send(batch, group);
+        packetsSent++;
+        bytesSent += size;
+
+        batchSeq++;
+        resetBatch();
+    }
+
+    /** Wait until the byte budget allows sending {@code size} more bytes. */
+    private void pace(int size) {
+        if (rateBytesPerSec <= 0) return;
+        long now = System.nanoTime();
+        if (nextSendNanos < now - MAX_BURST_NANOS) {
+            nextSendNanos = now - MAX_BURST_NANOS;
+        }
+        long wait = nextSendNanos - now;
+        while (wait > 0) {
+            // parkNanos est imprécis sous ~50 µs : on finit en attente active
+            if (wait > 50_000) LockSupport.parkNanos(wait - 50_000);
+            else Thread.onSpinWait();
+            wait = nextSendNanos - System.nanoTime();
+        }
+        nextSendNanos += size * 1_000_000_000L / rateBytesPerSec;
+    }
+
+    private void lingerLoop() {
+        while (running) {
+            LockSupport.parkNanos(Math.max(lingerNanos / 2, 100_000));
+            synchronized (this) {
+                if (batchCount > 0 && System.nanoTime() - batchStartNanos >= lingerNanos) {
+                    try {
+                        sendBatch();
+                    } catch (IOException e) {
+                        if (running) LOG.warn("Publisher linger flush failed: %s", e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    public String stats() {
+        double secs = (System.nanoTime() - startNanos) / 1e9;
+        return String.format("Publisher stats: messages=%d, packets=%d (%.0f pkt/s), bytes=%d (%.1f KB/s), %.1f msgs/packet",
+                messagesSent, packetsSent, packetsSent / secs, bytesSent, bytesSent / secs / 1024,
+                packetsSent == 0 ? 0.0 : (double) messagesSent / packetsSent);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        running = false;
+        channel.close();
+    }
+
+    // ================= MAIN =================
+
+    public static void main(String[] args) throws Exception {
+        String groupIp = (args.length>=1)? args[0] : "230.0.0.1";
+        int port = (args.length>=2)? Integer.parseInt(args[1]) : 8889;
+        int count = (args.length>=3)? Integer.parseInt(args[2]) : 100_000;
+        int msgSize = (args.length>=4)? Integer.parseInt(args[3]) : 64;
+        long rate = (args.length>=5)? Long.parseLong(args[4]) : 10L * 1024 * 1024; // octets/s, 0 = illimité
+        NetworkInterface nif = (args.length>=6)? NetworkInterface.getByName(args[5]) : null;
+
+        byte[] msg = new byte[msgSize];
+        try (MulticastPublisher pub = new MulticastPublisher(groupIp, port, nif, DEFAULT_MTU_PAYLOAD, rate, 1000)) {
+            LOG.info("MulticastPublisher{group=%s:%d, msgSize=%d, rate=%d B/s}", groupIp, port, msgSize, rate);
+            for (int i = 0; i < count; i++) {
+                byte[] id = Integer.toString(i).getBytes(StandardCharsets.US_ASCII);
+                System.arraycopy(id, 0, msg, 0, Math.min(id.length, msg.length));
+                pub.publish(msg);
+            }
+            pub.flush();
+            LOG.info(pub.stats());
+        }
+        LOG.flush(1000);
+    }
+}
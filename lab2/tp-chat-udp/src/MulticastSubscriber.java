@@ -0,0 +1,173 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+
+/**
+ * Multicast receiver for MulticastPublisher batches.
+ *
+ * Uses a DatagramChannel joined on an explicit NetworkInterface (instead of
+ * the deprecated MulticastSocket.joinGroup(InetAddress)), a 64 KB direct
+ * receive buffer, unpacks each batch into individual messages and keeps
+ * packets/sec, bytes/sec and lost-batch counters.
+ */
+public class MulticastSubscriber implements Closeable {
+
+    /** Called once per message; {@code msg} is only valid during the call. */
+    public interface MessageHandler {
+        void onMessage(ByteBuffer msg);
+    }
+
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+
+    private final DatagramChannel channel;
+    private final MembershipKey membership;
+    private final ByteBuffer buf = ByteBuffer.allocateDirect(64 * 1024);
+    private final MessageHandler handler;
+    private volatile boolean running = true;
+
+    private int expectedBatch = -1;
+    private volatile long packets, bytes, messages, lostBatches, malformed;
+
+    /** {@code nif} null: joined on {@link #pickInterface(String) pickInterface(null)}. */
+    public MulticastSubscriber(String groupIp, int port, NetworkInterface nif,
+                               MessageHandler handler) throws IOException {
+        InetAddress group = InetAddress.getByName(groupIp);
+        // join() exige une interface, contrairement à MulticastSocket.joinGroup()
+        NetworkInterface joinOn = (nif != null) ? nif : pickInterface(null);
+        this.handler = handler;
+        this.channel = DatagramChannel.open(StandardProtocolFamily.INET)
+                .setOption(StandardSocketOptions.SO_REUSEADDR, true)
+                .setOption(StandardSocketOptions.SO_RCVBUF, 4 << 20)
+                .bind(new InetSocketAddress(port));
+        this.membership = channel.join(group, joinOn);
+    }
+
+    /**
+     * Interface to join on: the one named {@code name}, else the first
+     * interface that is up and supports multicast (loopback as last resort).
+     */
+    public static NetworkInterface pickInterface(String name) throws SocketException {
+        if (name != null) {
+            NetworkInterface nif = NetworkInterface.getByName(name);
+            if (nif == null) throw new SocketException("Unknown interface: " + name);
+            return nif;
+        }
+        NetworkInterface loopback = null;
+        Enumeration<NetworkInterface> all = NetworkInterface.getNetworkInterfaces();
+        while (all.hasMoreElements()) {
+            NetworkInterface nif = all.nextElement();
+            if (!nif.isUp() || !nif.inetAddresses().anyMatch(a -> a instanceof Inet4Address)) continue;
+            if (nif.isLoopback()) {
+                loopback = nif;
+            } else if (nif.supportsMulticast()) {
+                return nif;
+            }
+        }
+        if (loopback == null) throw new SocketException("No multicast-capable interface");
+        return loopback;
+    }
+
+    /** Receive loop (blocking) until close(). */
+    public void run() throws IOException {
+        while (running) {
+            buf.clear();
+            try {
+                if (channel.receive(buf) == null) continue;
+            } catch (IOException e) {
+                if (running) throw e;
+                return;
+            }
+            buf.flip();
+            packets++;
+            bytes += buf.remaining();
+            unbatch(buf);
+        }
+    }
+
+    private void unbatch(ByteBuffer b) {
+        if (b.remaining() < MulticastPublisher.BATCH_HEADER || b.get() != MulticastPublisher.BATCH_MAGIC) {
+            malformed++;
+            return;
+        }
+        int seq = b.getInt();
+        int count = b.getShort() & 0xFFFF;
+        if (expectedBatch >= 0 && seq > expectedBatch) {
+            lostBatches += seq - expectedBatch;
+        }
+        expectedBatch = seq + 1;
+
+        int end = b.limit();
+        for (int i = 0; i < count; i++) {
+            if (b.remaining() < 2) { malformed++; return; }
+            int len = b.getShort() & 0xFFFF;
+            if (b.remaining() < len) { malformed++; return; }
+            int next = b.position() + len;
+            b.limit(next);
+            handler.onMessage(b);
+            b.limit(end).position(next);
+            messages++;
+        }
+    }
+
+    public long getMessages() { return messages; }
+
+    public String stats(double secs) {
+        return String.format("Subscriber stats: messages=%d, packets=%d (%.0f pkt/s), bytes=%d (%.1f KB/s), lostBatches=%d, malformed=%d",
+                messages, packets, packets / secs, bytes, bytes / secs / 1024, lostBatches, malformed);
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        membership.drop();
+        channel.close();
+    }
+
+    // ================= MAIN =================
+
+    public static void main(String[] args) throws Exception {
+        String groupIp = (args.length>=1)? args[0] : "230.0.0.1";
+        int port = (args.length>=2)? Integer.parseInt(args[1]) : 8889;
+        NetworkInterface nif = pickInterface((args.length>=3 && !"-".equals(args[2])) ? args[2] : null);
+        long seconds = (args.length>=4)? Long.parseLong(args[3]) : 0; // 0 = infini
+
+        MulticastSubscriber sub = new MulticastSubscriber(groupIp, port, nif, msg -> {
+            if (LOG.sampleTraffic()) {
+                byte[] copy = new byte[Math.min(msg.remaining(), 32)];
+                msg.duplicate().get(copy);
+                LOG.info("[multicast] %s", new String(copy, StandardCharsets.US_ASCII).trim());
+            }
+        });
+        LOG.info("MulticastSubscriber{group=%s:%d, if=%s}", groupIp, port, nif.getName());
+
+        long start = System.nanoTime();
+        Thread statsThread = new Thread(() -> {
+            long lastMessages = 0;
+            while (true) {
+                try { Thread.sleep(1000); } catch (InterruptedException e) { return; }
+                long m = sub.getMessages();
+                LOG.info("%d msgs/s | %s", m - lastMessages, sub.stats((System.nanoTime() - start) / 1e9));
+                lastMessages = m;
+            }
+        }, "MulticastSubscriber-stats");
+        statsThread.setDaemon(true);
+        statsThread.start();
+
+        if (seconds > 0) {
+            Thread stopper = new Thread(() -> {
+                try { Thread.sleep(seconds * 1000); } catch (InterruptedException ignored) {}
+                try { sub.close(); } catch (IOException ignored) {}
+            });
+            stopper.setDaemon(true);
+            stopper.start();
+        }
+        sub.run();
+        LOG.info(sub.stats((System.nanoTime() - start) / 1e9));
+        LOG.flush(1000);
+    }
+}
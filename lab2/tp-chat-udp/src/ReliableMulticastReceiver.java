@@ -0,0 +1,367 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Sequenced multicast stream with NACK-based repair (receiver side).
+ *
+ * Payloads are delivered in order. When a gap is detected (a higher seq or a
+ * heartbeat arrives) the missing seqs are NACKed on the group after a random
+ * delay; if another receiver's NACK for the same seqs is overheard first, ours
+ * is postponed (suppression), so a loss shared by N receivers costs ~1 NACK.
+ * Retries use exponential backoff and give up after MAX_NACK_ATTEMPTS.
+ * DATA or a HEARTBEAT with another epoch means the sender restarted: the
+ * state of the old stream is dropped and the receiver resyncs on the new one.
+ * A gap wider than the sender's repair window is not NACKed in full: the
+ * seqs older than the window are counted as lost and skipped, so a corrupt
+ * seq cannot make the receiver track billions of gaps. A DATA far behind the
+ * stream (more than the window) also resyncs.
+ *
+ * Everything runs on the receiving thread (timers are checked between two
+ * receive() calls), so no locking is needed.
+ */
+public class ReliableMulticastReceiver implements Closeable {
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+    private static final int TICK_MS = 5;
+    private static final int NACK_BACKOFF_MS = 10;   // fenêtre aléatoire avant le 1er NACK
+    private static final int MAX_NACK_ATTEMPTS = 6;
+    private static final byte[] LOST = new byte[0];  // marqueur "abandonné" dans pending
+    // Au-delà, le sender ne peut plus réparer : trou borné à sa fenêtre
+    private static final int MAX_GAP = ReliableMulticastSender.DEFAULT_HISTORY;
+
+    /** Missing seq waiting for repair. */
+    private static final class Gap {
+        long dueNanos;
+        int attempts;
+        Gap(long dueNanos) { this.dueNanos = dueNanos; }
+    }
+
+    private final InetSocketAddress group;
+    private final MulticastSocket socket;
+    private final int receiverId;
+    private final double dropRate; // perte simulée (comme ReliableUDPServer)
+    private final Random rnd = new Random();
+    private final Consumer<byte[]> consumer;
+    private volatile boolean running = true;
+
+    private int epoch;             // epoch du sender suivi (valable si nextExpected >= 0)
+    private int nextExpected = -1; // -1 : pas encore calé sur le flux
+    private int highestSeen;
+    private final TreeMap<Integer, byte[]> pending = new TreeMap<>(); // reçus en avance
+    private final TreeMap<Integer, Gap> missing = new TreeMap<>();
+
+    // Stats
+    private volatile long delivered, duplicates, gapsDetected, repaired, lost,
+            nacksSent, nacksSuppressed, simDropped, resyncs;
+
+    public ReliableMulticastReceiver(String groupIp, int port, NetworkInterface nif,
+                                     double dropRate, Consumer<byte[]> consumer) throws IOException {
+        this.group = new InetSocketAddress(InetAddress.getByName(groupIp), port);
+        this.receiverId = rnd.nextInt();
+        this.dropRate = dropRate;
+        this.consumer = consumer;
+
+        // MulticastSocket active SO_REUSEADDR : plusieurs receivers par machine
+        this.socket = new MulticastSocket(port);
+        socket.setTimeToLive(1);
+        socket.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        if (nif != null) {
+            socket.setNetworkInterface(nif);
+        }
+        socket.joinGroup(group, nif);
+        socket.setSoTimeout(TICK_MS);
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        ByteBuffer.wrap(b, off, 4).putInt(v);
+    }
+    private static int getInt(byte[] b, int off) {
+        return ByteBuffer.wrap(b, off, 4).getInt();
+    }
+
+    /** Receive loop; returns after close() or when durationMs elapsed (<= 0: forever). */
+    public void run(long durationMs) throws IOException {
+        byte[] buf = new byte[ReliableMulticastSender.HEADER + ReliableMulticastSender.MAX_PAYLOAD];
+        long end = (durationMs > 0) ? System.nanoTime() + durationMs * 1_000_000L : Long.MAX_VALUE;
+        while (running && System.nanoTime() < end) {
+            DatagramPacket p = new DatagramPacket(buf, buf.length);
+            try {
+                socket.receive(p);
+                handle(buf, p.getLength());
+            } catch (SocketTimeoutException e) {
+                // tick : on regarde les timers
+            } catch (SocketException e) {
+                if (running) throw e;
+            }
+            processTimers();
+        }
+    }
+
+    private void handle(byte[] b, int len) {
+        if (len < 9) return;
+        byte type = b[0];
+        int pktEpoch = getInt(b, 1);
+        long now = System.nanoTime();
+
+        if (nextExpected >= 0 && pktEpoch != epoch) {
+            // Sender redémarré (seqs repartis de 1) : seuls DATA / HEARTBEAT font basculer,
+            // REPAIR / GONE / NACK de l'autre epoch ne concernent pas notre flux
+            if (type != ReliableMulticastSender.TYPE_DATA && type != ReliableMulticastSender.TYPE_HEARTBEAT) return;
+            resync("sender restarted (epoch " + epoch + " -> " + pktEpoch + ")");
+        }
+
+        switch (type) {
+            case ReliableMulticastSender.TYPE_DATA:
+            case ReliableMulticastSender.TYPE_REPAIR: {
+                if (dropRate > 0 && rnd.nextDouble() < dropRate) {
+                    simDropped++;
+                    return;
+                }
+                int seq = getInt(b, 5);
+                if (nextExpected >= 0 && type == ReliableMulticastSender.TYPE_DATA
+                        && (long) nextExpected - seq > MAX_GAP) {
+                    resync("seq " + seq + " far behind " + nextExpected);
+                }
+                if (nextExpected < 0) {
+                    // Un REPAIR répond au NACK d'un autre receiver : seq ancien, on ne s'y cale pas
+                    if (type == ReliableMulticastSender.TYPE_REPAIR) return;
+                    epoch = pktEpoch;
+                    nextExpected = seq;
+                    highestSeen = seq - 1;
+                }
+                if (seq < nextExpected || pending.containsKey(seq)) {
+                    duplicates++;
+                    return;
+                }
+                if (missing.remove(seq) != null && type == ReliableMulticastSender.TYPE_REPAIR) {
+                    repaired++;
+                }
+                noteUpTo(seq - 1, now);
+                if (seq > highestSeen) highestSeen = seq;
+
+                int header = ReliableMulticastSender.HEADER;
+                byte[] payload = new byte[len - header];
+                System.arraycopy(b, header, payload, 0, payload.length);
+                pending.put(seq, payload);
+                deliverInOrder();
+                break;
+            }
+            case ReliableMulticastSender.TYPE_HEARTBEAT: {
+                int last = getInt(b, 5);
+                if (nextExpected < 0) {
+                    // on rejoint le flux en direct, sans réclamer l'historique
+                    epoch = pktEpoch;
+                    nextExpected = last + 1;
+                    highestSeen = last;
+                } else {
+                    noteUpTo(last, now);
+                }
+                break;
+            }
+            case ReliableMulticastSender.TYPE_NACK: {
+                if (len < 17 || getInt(b, 13) == receiverId) return; // notre propre NACK
+                if (getInt(b, 5) > getInt(b, 9)) return;
+                // Suppression : un autre receiver a déjà demandé ces seqs
+                for (Gap g : missing.subMap(getInt(b, 5), true, getInt(b, 9), true).values()) {
+                    g.dueNanos = now + backoffNanos(g.attempts + 1);
+                    nacksSuppressed++;
+                }
+                break;
+            }
+            case ReliableMulticastSender.TYPE_GONE: {
+                if (len < 13 || getInt(b, 5) > getInt(b, 9)) return;
+                Iterator<Map.Entry<Integer, Gap>> it =
+                        missing.subMap(getInt(b, 5), true, getInt(b, 9), true).entrySet().iterator();
+                while (it.hasNext()) {
+                    giveUp(it.next().getKey());
+                    it.remove();
+                }
+                deliverInOrder();
+                break;
+            }
+            default:
+                // type inconnu : ignoré
+        }
+    }
+
+    /**
+     * Forget the current stream: what is already pending is delivered (in
+     * order, skipping the holes), what is still missing counts as lost, and
+     * the next DATA or HEARTBEAT sets the new starting point.
+     */
+    private void resync(String reason) {
+        lost += dropStreamState();
+        nextExpected = -1;
+        resyncs++;
+        LOG.warn("Multicast stream resync: %s", reason);
+    }
+
+    /**
+     * Register as missing every seq in (highestSeen, upTo] that has not arrived,
+     * at most MAX_GAP of them: older ones are skipped as lost.
+     */
+    private void noteUpTo(int upTo, long now) {
+        long from = Math.max(highestSeen + 1, nextExpected);
+        if (upTo - from >= MAX_GAP) {
+            int start = upTo - MAX_GAP + 1;
+            skipTo(start, start - from);
+            from = start;
+        }
+        for (long s = from; s <= upTo; s++) { // long : upTo peut valoir Integer.MAX_VALUE
+            if (!pending.containsKey((int) s)) {
+                missing.put((int) s, new Gap(now + (long) rnd.nextInt(NACK_BACKOFF_MS * 1000) * 1000));
+                gapsDetected++;
+            }
+        }
+        if (upTo > highestSeen) highestSeen = upTo;
+    }
+
+    /**
+     * Jump over seqs the sender can no longer repair: pending payloads are
+     * delivered, the open gaps and the unseen seqs count as lost.
+     */
+    private void skipTo(int start, long unseen) {
+        lost += dropStreamState() + unseen;
+        nextExpected = start;
+        highestSeen = start - 1;
+        resyncs++;
+        LOG.warn("Multicast gap wider than %d seqs: %d skipped as lost, resumed at seq=%d", MAX_GAP, unseen, start);
+    }
+
+    /** Deliver what is pending (in order, over the holes), drop the gaps; returns how many were dropped. */
+    private int dropStreamState() {
+        for (byte[] p : pending.values()) {
+            if (p != LOST) {
+                delivered++;
+                consumer.accept(p);
+            }
+        }
+        int gaps = missing.size();
+        pending.clear();
+        missing.clear();
+        return gaps;
+    }
+
+    private long backoffNanos(int attempts) {
+        long base = (long) NACK_BACKOFF_MS << Math.min(attempts, 8);
+        return (base + rnd.nextInt(NACK_BACKOFF_MS)) * 1_000_000L;
+    }
+
+    private void processTimers() {
+        if (missing.isEmpty()) return;
+        long now = System.nanoTime();
+
+        // Regroupe les seqs échues en plages contiguës -> 1 NACK par plage
+        List<int[]> ranges = new ArrayList<>();
+        Iterator<Map.Entry<Integer, Gap>> it = missing.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Gap> e = it.next();
+            Gap g = e.getValue();
+            if (g.dueNanos > now) continue;
+            int seq = e.getKey();
+            if (g.attempts >= MAX_NACK_ATTEMPTS) {
+                giveUp(seq);
+                it.remove();
+                continue;
+            }
+            g.attempts++;
+            g.dueNanos = now + backoffNanos(g.attempts);
+            int[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && last[1] == seq - 1) {
+                last[1] = seq;
+            } else {
+                ranges.add(new int[]{seq, seq});
+            }
+        }
+        for (int[] r : ranges) {
+            sendNack(r[0], r[1]);
+        }
+        deliverInOrder();
+    }
+
+    private void giveUp(int seq) {
+        pending.put(seq, LOST);
+        lost++;
+    }
+
+    private void sendNack(int first, int last) {
+        byte[] pkt = new byte[17];
+        pkt[0] = ReliableMulticastSender.TYPE_NACK;
+        putInt(pkt, 1, epoch);
+        putInt(pkt, 5, first);
+        putInt(pkt, 9, last);
+        putInt(pkt, 13, receiverId);
+        try {
+            socket.send(new DatagramPacket(pkt, pkt.length, group));
+            nacksSent++;
+        } catch (IOException e) {
+            LOG.warn("NACK send failed: %s", e.getMessage());
+        }
+    }
+
+    private void deliverInOrder() {
+        byte[] p;
+        while (nextExpected >= 0 && (p = pending.remove(nextExpected)) != null) {
+            if (p != LOST) {
+                delivered++;
+                consumer.accept(p);
+            }
+            nextExpected++;
+        }
+    }
+
+    public String stats() {
+        return String.format("Receiver stats: delivered=%d, gaps=%d, repaired=%d, lost=%d, "
+                        + "nacksSent=%d, nacksSuppressed=%d, duplicates=%d, simDropped=%d, stillMissing=%d, resyncs=%d",
+                delivered, gapsDetected, repaired, lost, nacksSent, nacksSuppressed,
+                duplicates, simDropped, missing.size(), resyncs);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        socket.close();
+    }
+
+    // ================= MAIN =================
+
+    public static void main(String[] args) throws Exception {
+        String groupIp = (args.length>=1)? args[0] : "230.0.0.1";
+        int port = (args.length>=2)? Integer.parseInt(args[1]) : 8888;
+        double drop = (args.length>=3)? Double.parseDouble(args[2]) : 0.0; // ex: 0.1
+        NetworkInterface nif = (args.length>=4 && !"-".equals(args[3]))
+                ? NetworkInterface.getByName(args[3]) : null;              // ex: lo
+        long seconds = (args.length>=5)? Long.parseLong(args[4]) : 0;      // 0 = infini
+
+        try (ReliableMulticastReceiver receiver = new ReliableMulticastReceiver(groupIp, port, nif, drop,
+                payload -> {
+                    if (LOG.sampleTraffic()) {
+                        LOG.info("[multicast] %s", new String(payload, StandardCharsets.UTF_8));
+                    }
+                })) {
+            LOG.info("ReliableMulticastReceiver{group=%s:%d, dropRate=%.2f}", groupIp, port, drop);
+
+            Thread statsThread = new Thread(() -> {
+                while (true) {
+                    try { Thread.sleep(2000); } catch (InterruptedException e) { return; }
+                    LOG.info(receiver.stats());
+                }
+            }, "MulticastReceiver-stats");
+            statsThread.setDaemon(true);
+            statsThread.start();
+
+            receiver.run(seconds * 1000);
+            LOG.info(receiver.stats());
+            LOG.flush(1000);
+        }
+    }
+}
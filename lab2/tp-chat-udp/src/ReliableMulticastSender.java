@@ -0,0 +1,238 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Sequenced multicast stream with NACK-based repair (sender side).
+ *
+ * Every payload gets a sequence number and is multicast once. The last
+ * {@code historySize} datagrams stay in a retransmit buffer; receivers that
+ * detect a gap multicast a NACK and the sender re-multicasts the missing
+ * datagrams as REPAIR (one repair serves every receiver that lost it).
+ *
+ * Wire format (shared with ReliableMulticastReceiver):
+ *   DATA      'D' | epoch(4) | seq(4) | payload
+ *   REPAIR    'R' | epoch(4) | seq(4) | payload
+ *   HEARTBEAT 'H' | epoch(4) | lastSeq(4)                  (lets receivers see tail loss)
+ *   NACK      'N' | epoch(4) | first(4) | last(4) | receiverId(4)
+ *   GONE      'G' | epoch(4) | first(4) | last(4)          (no longer in the buffer)
+ *
+ * The epoch is drawn at random when the sender starts: seqs restart at 1
+ * with a new epoch, so receivers resync instead of taking the new stream
+ * for duplicates, and NACKs about the previous stream are ignored.
+ */
+public class ReliableMulticastSender implements Closeable {
+    static final byte TYPE_DATA      = 'D';
+    static final byte TYPE_REPAIR    = 'R';
+    static final byte TYPE_HEARTBEAT = 'H';
+    static final byte TYPE_NACK      = 'N';
+    static final byte TYPE_GONE      = 'G';
+    static final int HEADER = 9;
+    static final int MAX_PAYLOAD = 1400 - HEADER; // reste sous le MTU Ethernet
+    static final int DEFAULT_HISTORY = 4096;      // datagrammes gardés pour les réparations
+
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+    private static final int HEARTBEAT_MS = 200;
+    private static final int REPAIR_HOLDOFF_MS = 20; // 1 seule réparation par seq dans cette fenêtre
+
+    private final InetSocketAddress group;
+    private final MulticastSocket socket;
+    private final byte[][] history;
+    private final long[] lastRepairNanos;
+    private final Thread controlThread;
+    private final int epoch = new Random().nextInt();
+    private volatile boolean running = true;
+
+    private int nextSeq = 1; // protégé par this
+
+    // Stats
+    private volatile long dataSent, nacksReceived, repairsSent, repairsSuppressed, goneSent;
+
+    public ReliableMulticastSender(String groupIp, int port, int historySize, NetworkInterface nif)
+            throws IOException {
+        this.group = new InetSocketAddress(InetAddress.getByName(groupIp), port);
+        this.history = new byte[historySize][];
+        this.lastRepairNanos = new long[historySize];
+
+        // On rejoint aussi le groupe : c'est là que les receivers envoient leurs NACK
+        this.socket = new MulticastSocket(port);
+        socket.setTimeToLive(1);
+        socket.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        if (nif != null) {
+            socket.setNetworkInterface(nif);
+        }
+        socket.joinGroup(group, nif);
+        socket.setSoTimeout(HEARTBEAT_MS);
+
+        this.controlThread = new Thread(this::controlLoop, "MulticastSender-control");
+        this.controlThread.setDaemon(true);
+        this.controlThread.start();
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        ByteBuffer.wrap(b, off, 4).putInt(v);
+    }
+    private static int getInt(byte[] b, int off) {
+        return ByteBuffer.wrap(b, off, 4).getInt();
+    }
+
+    /** Multicast one payload; returns its sequence number. */
+    public int send(byte[] payload) throws IOException {
+        if (payload.length > MAX_PAYLOAD) {
+            throw new IllegalArgumentException("payload too large: " + payload.length + " > " + MAX_PAYLOAD);
+        }
+        byte[] pkt = new byte[HEADER + payload.length];
+        pkt[0] = TYPE_DATA;
+        putInt(pkt, 1, epoch);
+        System.arraycopy(payload, 0, pkt, HEADER, payload.length);
+
+        int seq;
+        synchronized (this) {
+            seq = nextSeq++;
+            putInt(pkt, 5, seq);
+            int slot = seq % history.length;
+            history[slot] = pkt;
+            lastRepairNanos[slot] = 0;
+        }
+        socket.send(new DatagramPacket(pkt, pkt.length, group));
+        dataSent++;
+        return seq;
+    }
+
+    public synchronized int lastSeq() {
+        return nextSeq - 1;
+    }
+
+    // ================= NACK / HEARTBEAT =================
+
+    private void controlLoop() {
+        byte[] buf = new byte[64];
+        long lastHeartbeat = System.nanoTime();
+        while (running) {
+            try {
+                DatagramPacket p = new DatagramPacket(buf, buf.length);
+                socket.receive(p);
+                if (buf[0] == TYPE_NACK && p.getLength() >= 17 && getInt(buf, 1) == epoch) {
+                    nacksReceived++;
+                    repair(getInt(buf, 5), getInt(buf, 9));
+                }
+                // les autres types (nos propres DATA en loopback) sont ignorés
+            } catch (SocketTimeoutException e) {
+                // rien reçu : on passe au heartbeat
+            } catch (IOException e) {
+                if (running) LOG.warn("Multicast sender control error: %s", e.getMessage());
+            }
+
+            long now = System.nanoTime();
+            if (now - lastHeartbeat >= HEARTBEAT_MS * 1_000_000L) {
+                lastHeartbeat = now;
+                sendControl(TYPE_HEARTBEAT, lastSeq(), 0, 9);
+            }
+        }
+    }
+
+    private void repair(int first, int last) {
+        long now = System.nanoTime();
+        int goneFirst = -1, goneLast = -1;
+        for (int seq = first; seq <= last && seq > 0; seq++) {
+            byte[] pkt;
+            synchronized (this) {
+                if (seq >= nextSeq) break;
+                int slot = seq % history.length;
+                pkt = history[slot];
+                if (pkt == null || getInt(pkt, 5) != seq) {
+                    pkt = null; // écrasé dans le buffer circulaire
+                } else if (now - lastRepairNanos[slot] < REPAIR_HOLDOFF_MS * 1_000_000L) {
+                    // déjà réparé à l'instant pour un autre receiver
+                    repairsSuppressed++;
+                    continue;
+                } else {
+                    lastRepairNanos[slot] = now;
+                }
+            }
+            if (pkt == null) {
+                if (goneFirst < 0) goneFirst = seq;
+                goneLast = seq;
+                continue;
+            }
+            byte[] rep = pkt.clone();
+            rep[0] = TYPE_REPAIR;
+            try {
+                socket.send(new DatagramPacket(rep, rep.length, group));
+                repairsSent++;
+            } catch (IOException e) {
+                LOG.warn("Repair of seq=%d failed: %s", seq, e.getMessage());
+            }
+        }
+        if (goneFirst > 0) {
+            sendControl(TYPE_GONE, goneFirst, goneLast, 13);
+            goneSent++;
+        }
+    }
+
+    private void sendControl(byte type, int a, int b, int len) {
+        byte[] pkt = new byte[len];
+        pkt[0] = type;
+        putInt(pkt, 1, epoch);
+        putInt(pkt, 5, a);
+        if (len >= 13) putInt(pkt, 9, b);
+        try {
+            socket.send(new DatagramPacket(pkt, pkt.length, group));
+        } catch (IOException e) {
+            if (running) LOG.warn("Control send failed: %s", e.getMessage());
+        }
+    }
+
+    public String stats() {
+        return String.format("Sender stats: data=%d, nacks=%d, repairs=%d, repairsSuppressed=%d, gone=%d",
+                dataSent, nacksReceived, repairsSent, repairsSuppressed, goneSent);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        socket.close();
+    }
+
+    // ================= MAIN =================
+
+    public static void main(String[] args) throws Exception {
+        String groupIp = (args.length>=1)? args[0] : "230.0.0.1";
+        int port = (args.length>=2)? Integer.parseInt(args[1]) : 8888;
+        Integer count = (args.length>=3)? Integer.valueOf(args[2]) : null;
+        int rate = (args.length>=4)? Integer.parseInt(args[3]) : 1000;     // msgs/s en mode count
+        NetworkInterface nif = (args.length>=5)? NetworkInterface.getByName(args[4]) : null; // ex: lo
+
+        try (ReliableMulticastSender sender = new ReliableMulticastSender(groupIp, port, DEFAULT_HISTORY, nif)) {
+            LOG.info("ReliableMulticastSender{group=%s:%d, if=%s}", groupIp, port,
+                    nif != null ? nif.getName() : "default");
+
+            if (count == null) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    sender.send(line.getBytes(StandardCharsets.UTF_8));
+                }
+            } else {
+                long intervalNanos = 1_000_000_000L / Math.max(1, rate);
+                long next = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    sender.send(("msg-" + (i + 1)).getBytes(StandardCharsets.UTF_8));
+                    next += intervalNanos;
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                }
+            }
+
+            // Laisse le temps aux receivers de réclamer les derniers trous
+            Thread.sleep(2000);
+            LOG.info(sender.stats());
+            LOG.flush(1000);
+        }
+    }
+}
@@ -11,6 +11,7 @@ public class ReliableUDPServer {
     private static final int MAX_BYTES = 1024; // payload+header <= 1024
     private static final byte TYPE_DATA = 'D';
     private static final byte TYPE_ACK  = 'A';
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
 
     private final int port;
     private final double dropRate; // probabilité de "jeter" un paquet (simulation)
@@ -35,7 +36,12 @@ public class ReliableUDPServer {
 
     public void launch() throws IOException {
         socket = new DatagramSocket(port);
-        System.out.printf("ReliableUDPServer{port=%d, dropRate=%.2f}%n", port, dropRate);
+        UdpSocketConfig.fromSystemProperties().apply(socket); // -Dudp.rcvbuf / -Dudp.sndbuf
+        LOG.info("ReliableUDPServer{port=%d, dropRate=%.2f}", port, dropRate);
+
+        // Trous de séquence (messages abandonnés par le client) vs pertes noyau
+        UdpDropDetector drops = new UdpDropDetector(port);
+        drops.startReporting(10_000);
 
         byte[] buf = new byte[MAX_BYTES];
         long totalReceived = 0, duplicates = 0, droppedSimulated = 0;
@@ -50,11 +56,12 @@ public class ReliableUDPServer {
             if (type != TYPE_DATA) continue;
             int seq = getInt(p.getData(), 1);
             SocketAddress client = p.getSocketAddress();
+            drops.onSequence(client, seq);
 
             // Simulation de perte (pour expérience)
             if (rnd.nextDouble() < dropRate) {
                 droppedSimulated++;
-                System.out.printf("(sim drop) from %s seq=%d%n", client, seq);
+                if (LOG.sampleTraffic()) LOG.info("(sim drop) from %s seq=%d", client, seq);
                 continue; // on "perd" le paquet => pas d'ACK
             }
 
@@ -62,12 +69,12 @@ public class ReliableUDPServer {
             boolean isDup = (last != null && seq <= last);
             if (isDup) duplicates++;
 
-            int payloadLen = p.getLength() - 5; // 1(type)+4(seq)
-            String msg = new String(p.getData(), 5, Math.max(0, payloadLen), StandardCharsets.UTF_8);
-
-            // Affiche et ACK
-            System.out.printf("[%s] seq=%d%s msg=%s%n", client, seq, (isDup?" (dup)":""),
-                    msg);
+            // Affiche (asynchrone, échantillonné) et ACK
+            if (LOG.sampleTraffic()) {
+                int payloadLen = p.getLength() - 5; // 1(type)+4(seq)
+                String msg = new String(p.getData(), 5, Math.max(0, payloadLen), StandardCharsets.UTF_8);
+                LOG.info("[%s] seq=%d%s msg=%s", client, seq, (isDup?" (dup)":""), msg);
+            }
 
             // envoi ACK: [TYPE_ACK | seq]
             byte[] ack = new byte[5];
@@ -81,7 +88,7 @@ public class ReliableUDPServer {
 
             // stats compactes (tape 'CTRL+C' pour arrêter)
             if (seq % 50 == 0) {
-                System.out.printf("Stats: received=%d, duplicates=%d, simDropped=%d%n",
+                LOG.info("Stats: received=%d, duplicates=%d, simDropped=%d",
                         totalReceived, duplicates, droppedSimulated);
             }
         }
@@ -1,20 +1,55 @@
 import java.net.*;
+import java.nio.ByteBuffer;
 
 public class UDPBufferServer {
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+
     public static void main(String[] args) throws Exception {
         int port = (args.length>=1)? Integer.parseInt(args[0]) : 8082;
         int bufSize = (args.length>=2)? Integer.parseInt(args[1]) : 2048;
+        // mode "reflect" : répond aux sondes de UDPLoadGenerator (en-tête + taille reçue)
+        boolean reflect = (args.length>=3) && "reflect".equalsIgnoreCase(args[2]);
         try (DatagramSocket s = new DatagramSocket(port)) {
-            System.out.printf("UDPBufferServer{port=%d, buffer=%d}%n", port, bufSize);
+            UdpSocketConfig.fromSystemProperties().apply(s); // -Dudp.rcvbuf / -Dudp.sndbuf
+            LOG.info("UDPBufferServer{port=%d, buffer=%d, reflect=%b}", port, bufSize, reflect);
+            UdpDropDetector drops = new UdpDropDetector(port);
+            drops.startReporting(5_000);
             byte[] buf = new byte[bufSize];
+            byte[] reply = new byte[UDPLoadGenerator.REPLY_LEN];
+            long probes = 0, truncatedProbes = 0;
             while (true) {
                 DatagramPacket p = new DatagramPacket(buf, buf.length);
                 s.receive(p);
                 int len = p.getLength();
+
+                if (reflect && len >= UDPLoadGenerator.PROBE_HEADER && buf[0] == UDPLoadGenerator.PROBE) {
+                    // La sonde annonce sa taille : la troncature est certaine, plus "possible"
+                    ByteBuffer header = ByteBuffer.wrap(buf);
+                    int declared = header.getInt(21);
+                    // chaque émetteur de UDPLoadGenerator a sa propre socket -> clé = adresse
+                    drops.onSequence(p.getSocketAddress(), header.getLong(5));
+                    boolean truncated = len < declared;
+                    probes++;
+                    if (truncated) truncatedProbes++;
+
+                    System.arraycopy(buf, 0, reply, 0, UDPLoadGenerator.PROBE_HEADER);
+                    reply[UDPLoadGenerator.PROBE_HEADER] = (byte) (truncated ? 1 : 0);
+                    ByteBuffer.wrap(reply, UDPLoadGenerator.PROBE_HEADER + 1, 4).putInt(len);
+                    s.send(new DatagramPacket(reply, reply.length, p.getSocketAddress()));
+
+                    if (LOG.sampleTraffic() && (probes % 10_000 == 0 || (truncated && truncatedProbes == 1))) {
+                        LOG.info("probes=%d truncated=%d (last len=%d declared=%d)",
+                                probes, truncatedProbes, len, declared);
+                    }
+                    continue;
+                }
+
                 boolean maybeTruncated = (len == bufSize); // si datagram > buffer -> tronqué à buffer
-                System.out.printf("recv len=%d (buffer=%d)%s from %s%n",
-                        len, bufSize, maybeTruncated?" [POSSIBLE TRUNCATION]":"", p.getSocketAddress());
+                if (maybeTruncated || LOG.sampleTraffic()) {
+                    LOG.info("recv len=%d (buffer=%d)%s from %s",
+                            len, bufSize, maybeTruncated?" [POSSIBLE TRUNCATION]":"", p.getSocketAddress());
+                }
             }
         }
     }
-}
\ No newline at end of file
+}
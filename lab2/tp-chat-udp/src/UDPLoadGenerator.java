@@ -0,0 +1,194 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * UDP load generator / MTU and truncation profiler (PacketSizeClient at scale).
+ *
+ * For every (SO_SNDBUF, SO_RCVBUF, payload size, send rate) combination, N
+ * concurrent senders each send probe datagrams for a fixed duration to a
+ * UDPBufferServer running in "reflect" mode. The server echoes the probe
+ * header plus what it actually received, which gives per-step: delivered
+ * rate, loss, truncation and RTT percentiles. One CSV line per step; size is
+ * the datagram actually sent (at least the 25-byte probe header), the buffer
+ * columns the sizes the kernel granted (0 requested = system default).
+ *
+ * Probe layout: 'P' | senderId(4) | seq(8) | sendNanos(8) | declaredLen(4) | padding 'A'...
+ * Reply layout: probe header (25) | truncated(1) | receivedLen(4)
+ *
+ * Usage:
+ *   java UDPBufferServer 8082 65535 reflect
+ *   java UDPLoadGenerator localhost 8082 64,512,1472,8192,65507 1000,10000 4 3 report.csv [sndbufs] [rcvbufs]
+ *   (sndbufs/rcvbufs: comma separated too, e.g. 0,65536,1048576)
+ */
+public class UDPLoadGenerator {
+    static final byte PROBE = 'P';
+    static final int PROBE_HEADER = 25;
+    static final int REPLY_LEN = PROBE_HEADER + 5;
+
+    /** One sender thread + its reply reader, for one step. */
+    private static final class Sender {
+        final int id;
+        final DatagramSocket socket;
+        final long[] rttNanos;
+        int rttCount;
+        long sent, sendErrors, delivered, truncated;
+        volatile boolean sending = true;
+
+        Sender(int id, int maxSamples, int sndBuf, int rcvBuf) throws SocketException {
+            this.id = id;
+            this.socket = new DatagramSocket();
+            if (sndBuf > 0) socket.setSendBufferSize(sndBuf);
+            if (rcvBuf > 0) socket.setReceiveBufferSize(rcvBuf);
+            socket.setSoTimeout(100);
+            this.rttNanos = new long[maxSamples];
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: java UDPLoadGenerator <host> <port> [sizes] [rates] [senders] [seconds] [csv] [sndbufs] [rcvbufs]");
+            System.err.println("  sizes/rates/sndbufs/rcvbufs: comma separated (bytes, datagrams/s per sender, bytes; 0 = default)");
+            return;
+        }
+        InetAddress host = InetAddress.getByName(args[0]);
+        int port = Integer.parseInt(args[1]);
+        int[] sizes = parseList((args.length >= 3) ? args[2] : "64,512,1472,4096,8192,16384,65507");
+        int[] rates = parseList((args.length >= 4) ? args[3] : "1000,10000");
+        int senders = (args.length >= 5) ? Math.max(1, Integer.parseInt(args[4])) : 4;
+        int seconds = (args.length >= 6) ? Integer.parseInt(args[5]) : 2;
+        String csv = (args.length >= 7) ? args[6] : "udp-load-report.csv";
+        int[] sndBufs = parseList((args.length >= 8) ? args[7] : "0");
+        int[] rcvBufs = parseList((args.length >= 9) ? args[8] : "0");
+
+        try (PrintWriter out = new PrintWriter(new FileWriter(csv))) {
+            out.println("size,rate_per_sender,senders,sndbuf,rcvbuf,sent,send_errors,delivered,"
+                    + "delivered_per_sec,loss_pct,truncated,rtt_p50_us,rtt_p90_us,rtt_p99_us,rtt_max_us");
+            for (int sndBuf : sndBufs) {
+                for (int rcvBuf : rcvBufs) {
+                    for (int size : sizes) {
+                        for (int rate : rates) {
+                            String line = runStep(host, port, size, rate, senders, seconds, sndBuf, rcvBuf);
+                            out.println(line);
+                            out.flush();
+                            System.out.println(line);
+                        }
+                    }
+                }
+            }
+        }
+        System.out.println("Report written to " + csv);
+    }
+
+    private static String runStep(InetAddress host, int port, int size, int rate, int nSenders,
+                                  int seconds, int sndBuf, int rcvBuf) throws Exception {
+        int payload = Math.max(size, PROBE_HEADER);
+        int maxSamples = (int) Math.min((long) rate * seconds + 16, 2_000_000);
+
+        List<Sender> senders = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < nSenders; i++) {
+            Sender s = new Sender(i, maxSamples, sndBuf, rcvBuf);
+            senders.add(s);
+            threads.add(new Thread(() -> sendLoop(s, host, port, payload, rate, seconds), "udp-load-send-" + i));
+            threads.add(new Thread(() -> replyLoop(s), "udp-load-recv-" + i));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) t.join();
+
+        // Tailles accordées par le noyau (demande plafonnée par wmem_max/rmem_max)
+        int grantedSnd = senders.get(0).socket.getSendBufferSize();
+        int grantedRcv = senders.get(0).socket.getReceiveBufferSize();
+        long sent = 0, errors = 0, delivered = 0, truncated = 0;
+        int total = 0;
+        for (Sender s : senders) {
+            sent += s.sent; errors += s.sendErrors; delivered += s.delivered; truncated += s.truncated;
+            total += s.rttCount;
+            s.socket.close();
+        }
+        long[] all = new long[total];
+        int pos = 0;
+        for (Sender s : senders) {
+            System.arraycopy(s.rttNanos, 0, all, pos, s.rttCount);
+            pos += s.rttCount;
+        }
+        Arrays.sort(all);
+
+        double loss = (sent == 0) ? 0.0 : 100.0 * (sent - delivered) / sent;
+        return String.format(java.util.Locale.ROOT, "%d,%d,%d,%d,%d,%d,%d,%d,%.0f,%.2f,%d,%d,%d,%d,%d",
+                payload, rate, nSenders, grantedSnd, grantedRcv, sent, errors, delivered, (double) delivered / seconds, loss, truncated,
+                percentileMicros(all, 0.50), percentileMicros(all, 0.90),
+                percentileMicros(all, 0.99), percentileMicros(all, 1.0));
+    }
+
+    private static void sendLoop(Sender s, InetAddress host, int port, int size, int rate, int seconds) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) 'A');
+        ByteBuffer header = ByteBuffer.wrap(data, 0, PROBE_HEADER);
+        DatagramPacket p = new DatagramPacket(data, data.length, host, port);
+
+        long interval = 1_000_000_000L / Math.max(1, rate);
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long next = System.nanoTime();
+        long seq = 0;
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            header.clear();
+            header.put(PROBE).putInt(s.id).putLong(seq++).putLong(System.nanoTime()).putInt(size);
+            try {
+                s.socket.send(p);
+                s.sent++;
+            } catch (IOException e) {
+                s.sendErrors++; // ex: "Message too long" au-delà de 65507
+            }
+            next += interval;
+        }
+        s.sending = false;
+    }
+
+    private static void replyLoop(Sender s) {
+        byte[] buf = new byte[REPLY_LEN];
+        ByteBuffer bb = ByteBuffer.wrap(buf);
+        long idleSince = 0;
+        while (true) {
+            DatagramPacket p = new DatagramPacket(buf, buf.length);
+            try {
+                s.socket.receive(p);
+            } catch (SocketTimeoutException e) {
+                if (!s.sending) {
+                    // petite fenêtre pour les dernières réponses en vol
+                    if (idleSince == 0) idleSince = System.nanoTime();
+                    else if (System.nanoTime() - idleSince > 300_000_000L) return;
+                }
+                continue;
+            } catch (IOException e) {
+                return;
+            }
+            if (p.getLength() < REPLY_LEN || buf[0] != PROBE) continue;
+            long now = System.nanoTime();
+            long sentAt = bb.getLong(13);
+            s.delivered++;
+            if (buf[PROBE_HEADER] != 0) s.truncated++;
+            if (s.rttCount < s.rttNanos.length) s.rttNanos[s.rttCount++] = now - sentAt;
+            idleSince = 0;
+        }
+    }
+
+    private static long percentileMicros(long[] sorted, double q) {
+        if (sorted.length == 0) return -1;
+        int idx = (int) Math.min(sorted.length - 1, Math.ceil(q * sorted.length) - 1);
+        return sorted[Math.max(0, idx)] / 1000;
+    }
+
+    private static int[] parseList(String s) {
+        return Arrays.stream(s.split(",")).mapToInt(x -> Integer.parseInt(x.trim())).toArray();
+    }
+}
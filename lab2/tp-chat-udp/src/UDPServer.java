@@ -7,6 +7,7 @@ import java.nio.charset.StandardCharsets;
 public class UDPServer {
     private static final int DEFAULT_PORT = 8080;       // port par défaut demandé dans l’énoncé (exemple)
     private static final int MAX_BYTES = 1024;           // taille max du message encodé UTF-8
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
     private final int port;
     private boolean running = false;
     private DatagramSocket socket;
@@ -24,23 +25,28 @@ public class UDPServer {
     // Démarrage (sans Threads pour l’instant)
     public void launch() throws IOException {
         socket = new DatagramSocket(port);
+        UdpSocketConfig.fromSystemProperties().apply(socket); // -Dudp.rcvbuf / -Dudp.sndbuf
         running = true;
-        System.out.println(this.toString());
+        LOG.info(this.toString());
+
+        // Pas de numéro de séquence ici : seuls les compteurs noyau sont suivis
+        new UdpDropDetector(port).startReporting(10_000);
 
         byte[] buffer = new byte[MAX_BYTES];
         while (running) {
             DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
             socket.receive(packet); // bloquant
 
-            int len = packet.getLength();
-            InetAddress clientAddr = packet.getAddress();
-            int clientPort = packet.getPort();
-
-            // Décoder uniquement les 'len' premiers octets
-            String msg = new String(packet.getData(), 0, len, StandardCharsets.UTF_8);
-
             // Affichage demandé : chaîne précédée de l’adresse du client
-            System.out.printf("[%s:%d] %s%n", clientAddr.getHostAddress(), clientPort, msg);
+            // (asynchrone + échantillonné, pour ne pas limiter le débit de réception)
+            if (LOG.sampleTraffic()) {
+                int len = packet.getLength();
+                InetAddress clientAddr = packet.getAddress();
+
+                // Décoder uniquement les 'len' premiers octets
+                String msg = new String(packet.getData(), 0, len, StandardCharsets.UTF_8);
+                LOG.info("[%s:%d] %s", clientAddr.getHostAddress(), packet.getPort(), msg);
+            }
         }
     }
 
@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Tells kernel receive-buffer loss apart from network loss.
+ *
+ * - Application view: the receive loop reports every (source, seq) it sees;
+ *   a jump in a source's sequence counts the skipped seqs as missing, a late
+ *   arrival of a missing seq cancels it (reordering, retransmission).
+ * - Kernel view (Linux only): the "drops" column of /proc/net/udp{,6} for
+ *   our local port, i.e. datagrams discarded because SO_RCVBUF was full.
+ *
+ * missing ~= kernel drops -> enlarge SO_RCVBUF or read faster;
+ * missing >> kernel drops -> the datagrams were lost before reaching the host.
+ *
+ * A source silent for -Dudp.sourceIdle seconds (default 300) is forgotten,
+ * its pending gaps staying counted as missing; if it comes back it starts
+ * afresh. onSequence() is called by the receiving thread only; report() may
+ * be called from any thread.
+ */
+public class UdpDropDetector {
+
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+    private static final Path[] PROC_UDP = { Paths.get("/proc/net/udp"), Paths.get("/proc/net/udp6") };
+
+    private static final int MAX_TRACKED_GAPS = 4096; // par source
+
+    /** Sequence state of one sender (receiving thread only). */
+    private static final class Source {
+        long highest;
+        long lastSeenNanos;
+        final TreeSet<Long> gaps = new TreeSet<>();
+        Source(long highest) { this.highest = highest; }
+    }
+
+    private final int localPort;
+    // Ordre d'accès : les sources les plus anciennes en tête, le balayage s'arrête à la première active
+    private final Map<Object, Source> sources = new LinkedHashMap<>(16, 0.75f, true);
+    private final long idleNanos = Long.getLong("udp.sourceIdle", 300L) * 1_000_000_000L;
+    private long lastSweepNanos = System.nanoTime();
+    private final long kernelDropsAtStart;
+
+    private volatile long received, missing, late, duplicates, evicted;
+
+    public UdpDropDetector(int localPort) {
+        this.localPort = localPort;
+        this.kernelDropsAtStart = Math.max(0, readKernelStats()[0]);
+    }
+
+    /** Record one datagram carrying {@code seq} from {@code source}. */
+    public void onSequence(Object source, long seq) {
+        received++;
+        long now = System.nanoTime();
+        if (now - lastSweepNanos > 1_000_000_000L) {
+            evictIdle(now);
+        }
+        Source src = sources.get(source);
+        if (src == null) {
+            src = new Source(seq);
+            src.lastSeenNanos = now;
+            sources.put(source, src);
+            return;
+        }
+        src.lastSeenNanos = now;
+        if (seq > src.highest) {
+            missing += seq - src.highest - 1;
+            for (long s = Math.max(src.highest + 1, seq - MAX_TRACKED_GAPS); s < seq; s++) {
+                src.gaps.add(s);
+            }
+            while (src.gaps.size() > MAX_TRACKED_GAPS) {
+                src.gaps.pollFirst(); // trop vieux : reste compté comme perdu
+            }
+            src.highest = seq;
+        } else if (src.gaps.remove(seq)) {
+            // arrivée tardive (réordonnancement, retransmission) d'un seq compté comme manquant
+            missing--;
+            late++;
+        } else {
+            duplicates++;
+        }
+    }
+
+    /** Forget the sources silent for more than udp.sourceIdle (at most once per second). */
+    private void evictIdle(long now) {
+        lastSweepNanos = now;
+        Iterator<Source> it = sources.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().lastSeenNanos <= idleNanos) break;
+            it.remove();
+            evicted++;
+        }
+    }
+
+    public String report() {
+        long[] k = readKernelStats();
+        String kernel;
+        long network;
+        if (k[0] < 0) {
+            kernel = "kernelDrops=n/a";
+            network = missing;
+        } else {
+            long drops = k[0] - kernelDropsAtStart;
+            kernel = "kernelDrops=" + drops + ", rxQueue=" + k[1] + " B";
+            network = Math.max(0, missing - drops);
+        }
+        return String.format("Drop detector(port=%d): received=%d, missing=%d, late=%d, duplicates=%d, %s, networkLoss~=%d, idleSourcesEvicted=%d",
+                localPort, received, missing, late, duplicates, kernel, network, evicted);
+    }
+
+    /** Log report() every periodMs from a daemon thread. */
+    public void startReporting(long periodMs) {
+        Thread t = new Thread(() -> {
+            while (true) {
+                try { Thread.sleep(periodMs); } catch (InterruptedException e) { return; }
+                LOG.info(report());
+            }
+        }, "UdpDropDetector-" + localPort);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * {drops, rx_queue} summed over the /proc/net/udp entries bound to our
+     * port, or {-1, -1} when not on Linux.
+     */
+    private long[] readKernelStats() {
+        long drops = 0, rxQueue = 0;
+        boolean found = false;
+        for (Path p : PROC_UDP) {
+            List<String> lines;
+            try {
+                lines = Files.readAllLines(p);
+            } catch (IOException | SecurityException e) {
+                continue;
+            }
+            for (int i = 1; i < lines.size(); i++) { // ligne 0 = en-têtes
+                // sl local_address rem_address st tx_queue:rx_queue tr tm->when retrnsmt uid timeout inode ref pointer drops
+                String[] f = lines.get(i).trim().split("\\s+");
+                if (f.length < 13) continue;
+                int colon = f[1].lastIndexOf(':');
+                if (colon < 0 || Integer.parseInt(f[1].substring(colon + 1), 16) != localPort) continue;
+                found = true;
+                String queues = f[4];
+                rxQueue += Long.parseLong(queues.substring(queues.indexOf(':') + 1), 16);
+                drops += Long.parseLong(f[f.length - 1]);
+            }
+        }
+        return found ? new long[]{drops, rxQueue} : new long[]{-1, -1};
+    }
+}
@@ -0,0 +1,43 @@
+import java.net.DatagramSocket;
+import java.net.SocketException;
+
+/**
+ * Socket options of the UDP servers, read from system properties:
+ *   -Dudp.rcvbuf=BYTES   SO_RCVBUF (0 / absent = OS default)
+ *   -Dudp.sndbuf=BYTES   SO_SNDBUF (0 / absent = OS default)
+ *
+ * The kernel may round or cap the values (Linux doubles them and caps at
+ * net.core.rmem_max / wmem_max), so the effective sizes are logged too.
+ */
+public class UdpSocketConfig {
+
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+
+    private final int receiveBufferSize;
+    private final int sendBufferSize;
+
+    public UdpSocketConfig(int receiveBufferSize, int sendBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    public static UdpSocketConfig fromSystemProperties() {
+        return new UdpSocketConfig(Integer.getInteger("udp.rcvbuf", 0),
+                                   Integer.getInteger("udp.sndbuf", 0));
+    }
+
+    /** Apply the configured options and log requested vs effective sizes. */
+    public void apply(DatagramSocket socket) throws SocketException {
+        if (receiveBufferSize > 0) socket.setReceiveBufferSize(receiveBufferSize);
+        if (sendBufferSize > 0) socket.setSendBufferSize(sendBufferSize);
+
+        LOG.info("UDP socket buffers: SO_RCVBUF=%d (requested %s), SO_SNDBUF=%d (requested %s)",
+                socket.getReceiveBufferSize(), receiveBufferSize > 0 ? receiveBufferSize : "default",
+                socket.getSendBufferSize(), sendBufferSize > 0 ? sendBufferSize : "default");
+    }
+
+    @Override
+    public String toString() {
+        return "UdpSocketConfig{rcvbuf=" + receiveBufferSize + ", sndbuf=" + sendBufferSize + "}";
+    }
+}
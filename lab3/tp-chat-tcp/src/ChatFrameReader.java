@@ -0,0 +1,149 @@
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads ChatMessage frames TYPE|SEQ|LEN|PAYLOAD\n straight from the socket
+ * bytes, framing on LEN (UTF-8 byte count) instead of readLine(): a payload
+ * may contain '\n' and no intermediate line String is built.
+ *
+ * The read buffer is reused (grown up to maxFrameSize if needed). After a
+ * protocol error the reader skips to the next '\n' so that the session can
+ * go on, as with the line-based version.
+ */
+public class ChatFrameReader {
+
+    private static final int MAX_HEADER = 32; // "SYSTEM|-2147483648|2147483647|"
+
+    private final InputStream in;
+    private final int maxFrameSize;
+    private byte[] buf;
+    private int start; // premier octet non consommé
+    private int end;   // fin des données lues
+    private boolean resync;
+
+    public ChatFrameReader(InputStream in, int maxFrameSize) {
+        this.in = in;
+        this.maxFrameSize = maxFrameSize;
+        this.buf = new byte[8192];
+    }
+
+    /**
+     * Next frame, or null at end of stream. Blocks only if the buffer does not
+     * already hold a complete frame.
+     */
+    public ChatMessage read() throws IOException, ProtocolException {
+        while (true) {
+            if (resync) {
+                int nl = indexOfNewline(start);
+                if (nl < 0) {
+                    start = end; // tout jeter, on cherche toujours la fin de ligne
+                } else {
+                    start = nl + 1;
+                    resync = false;
+                    continue;
+                }
+            } else {
+                ChatMessage msg = tryParse();
+                if (msg != null) return msg;
+            }
+            if (!fill()) {
+                if (start < end && !resync) {
+                    start = end;
+                    throw new ProtocolException("Truncated frame at end of stream");
+                }
+                return null;
+            }
+        }
+    }
+
+    /** True if a complete frame (or a protocol error) is available without blocking. */
+    public boolean hasBufferedFrame() {
+        if (resync) return indexOfNewline(start) >= 0;
+        int p3 = ChatMessage.headerEnd(buf, start, Math.min(end, start + MAX_HEADER));
+        if (p3 == -2) return true;
+        if (p3 < 0) return end - start >= MAX_HEADER;
+        int len;
+        try {
+            len = ChatMessage.parseLength(buf, start, p3);
+        } catch (ProtocolException e) {
+            return true;
+        }
+        if (len > maxFrameSize) return true; // tryParse() lèvera "Frame too large"
+        int frameEnd = p3 + 1 + len;
+        if (frameEnd >= end) return false;
+        return buf[frameEnd] != '\r' || frameEnd + 1 < end;
+    }
+
+    private ChatMessage tryParse() throws ProtocolException {
+        int avail = end - start;
+        if (avail == 0) return null;
+
+        int p3 = ChatMessage.headerEnd(buf, start, Math.min(end, start + MAX_HEADER));
+        if (p3 < 0) {
+            if (p3 == -2 || avail >= MAX_HEADER) {
+                resync = true;
+                throw new ProtocolException("Invalid header (expected 4 fields)");
+            }
+            return null; // en-tête incomplet
+        }
+
+        int len;
+        try {
+            len = ChatMessage.parseLength(buf, start, p3);
+        } catch (ProtocolException e) {
+            resync = true;
+            throw e;
+        }
+        // len d'abord : p3 + 1 + len déborde d'un int pour LEN proche de Integer.MAX_VALUE
+        if (len > maxFrameSize || p3 + 1 - start + len + 2 > maxFrameSize) {
+            resync = true;
+            throw new ProtocolException("Frame too large: " + len + " bytes");
+        }
+        int frameEnd = p3 + 1 + len;           // fin du payload
+        if (frameEnd >= end) return null;      // payload ou terminateur pas encore là
+
+        // Terminateur "\n" (ou "\r\n" si le client utilise println sous Windows)
+        int term = frameEnd;
+        if (buf[term] == '\r') {
+            if (term + 1 >= end) return null;
+            term++;
+        }
+        if (buf[term] != '\n') {
+            resync = true;
+            throw new ProtocolException("Length mismatch: header=" + len + ", no end of frame after payload");
+        }
+
+        int frameStart = start;
+        start = term + 1;
+        return ChatMessage.decode(buf, frameStart, frameEnd - frameStart);
+    }
+
+    /** Read more bytes; false at end of stream. */
+    private boolean fill() throws IOException {
+        if (start > 0 && start == end) {
+            start = end = 0;
+        } else if (end == buf.length) {
+            if (start > 0) {
+                System.arraycopy(buf, start, buf, 0, end - start);
+                end -= start;
+                start = 0;
+            } else {
+                // trame plus grande que le buffer (bornée par maxFrameSize dans tryParse)
+                byte[] bigger = new byte[buf.length * 2];
+                System.arraycopy(buf, 0, bigger, 0, end);
+                buf = bigger;
+            }
+        }
+        int n = in.read(buf, end, buf.length - end);
+        if (n < 0) return false;
+        end += n;
+        return true;
+    }
+
+    private int indexOfNewline(int from) {
+        for (int i = from; i < end; i++) {
+            if (buf[i] == '\n') return i;
+        }
+        return -1;
+    }
+}
@@ -1,9 +1,21 @@
+import java.nio.charset.StandardCharsets;
+
 public class ChatMessage {
 
     public enum Type { CHAT, SYSTEM, ERROR }
 
+    // Type names pre-encoded once (wire format is ASCII)
+    private static final Type[] TYPES = Type.values();
+    private static final byte[][] TYPE_BYTES = new byte[TYPES.length][];
+    static {
+        for (Type t : TYPES) {
+            TYPE_BYTES[t.ordinal()] = t.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
     public final Type type;
     public final int seq;
+    /** Payload size in UTF-8 bytes (what LEN carries on the wire). */
     public final int length;
     public final String payload;
 
@@ -11,7 +23,7 @@ public class ChatMessage {
         this.type = type;
         this.seq = seq;
         this.payload = (payload != null) ? payload : "";
-        this.length = this.payload.length();
+        this.length = utf8Length(this.payload);
     }
 
     /** Helper for normal chat messages. */
@@ -53,24 +65,212 @@ public class ChatMessage {
         }
 
         String payload = parts[3];
-        if (payload.length() != len) {
+        int actual = utf8Length(payload);
+        if (actual != len) {
             throw new ProtocolException("Length mismatch: header=" + len +
-                                        ", actual=" + payload.length());
+                                        ", actual=" + actual);
         }
 
         return new ChatMessage(type, seq, payload);
     }
-}
 
-/**
- * Custom exception used for protocol errors (3.9.3 Advanced Error Handling).
- */
-class ProtocolException extends Exception {
-    public ProtocolException(String message) {
-        super(message);
+    // ========= Byte-level codec (no split / regex, LEN = UTF-8 bytes) =========
+
+    /**
+     * Decode one frame TYPE|SEQ|LEN|PAYLOAD from {@code b[off, off+len)}
+     * (no line terminator). Only the payload String is allocated.
+     */
+    public static ChatMessage decode(byte[] b, int off, int len) throws ProtocolException {
+        int end = off + len;
+        int p1 = indexOf(b, off, end, (byte) '|');
+        int p2 = (p1 < 0) ? -1 : indexOf(b, p1 + 1, end, (byte) '|');
+        int p3 = (p2 < 0) ? -1 : indexOf(b, p2 + 1, end, (byte) '|');
+        if (p3 < 0) {
+            throw new ProtocolException("Invalid header (expected 4 fields)");
+        }
+
+        Type type = parseType(b, off, p1);
+        int seq = parseInt(b, p1 + 1, p2, true);
+        int payloadLen = parseInt(b, p2 + 1, p3, false);
+
+        int actual = end - (p3 + 1);
+        if (actual != payloadLen) {
+            throw new ProtocolException("Length mismatch: header=" + payloadLen + ", actual=" + actual);
+        }
+        String payload = new String(b, p3 + 1, payloadLen, StandardCharsets.UTF_8);
+        return new ChatMessage(type, seq, payload, payloadLen);
     }
 
-    public ProtocolException(String message, Throwable cause) {
-        super(message, cause);
+    // Internal: the byte count is already known, no need to recount it
+    private ChatMessage(Type type, int seq, String payload, int length) {
+        this.type = type;
+        this.seq = seq;
+        this.payload = payload;
+        this.length = length;
     }
-}
\ No newline at end of file
+
+    /** Number of bytes of the frame written by {@link #encodeFrame} (terminator included). */
+    public static int frameSize(ChatMessage msg) {
+        return TYPE_BYTES[msg.type.ordinal()].length + 1
+                + digits(msg.seq) + 1 + digits(msg.length) + 1 + msg.length + 1;
+    }
+
+    /**
+     * Write TYPE|SEQ|LEN|PAYLOAD\n into {@code dst} at {@code off}; returns the
+     * offset just after the frame. {@code dst} must have frameSize(msg) bytes left.
+     */
+    public static int encodeFrame(ChatMessage msg, byte[] dst, int off) {
+        byte[] t = TYPE_BYTES[msg.type.ordinal()];
+        System.arraycopy(t, 0, dst, off, t.length);
+        off += t.length;
+        dst[off++] = '|';
+        off = writeInt(msg.seq, dst, off);
+        dst[off++] = '|';
+        off = writeInt(msg.length, dst, off);
+        dst[off++] = '|';
+        off = writeUtf8(msg.payload, dst, off);
+        dst[off++] = '\n';
+        return off;
+    }
+
+    /**
+     * Position of the third '|' in b[off, end), -1 if not there (yet),
+     * -2 if a '\n' comes first (not a valid header).
+     */
+    static int headerEnd(byte[] b, int off, int end) {
+        int pipes = 0;
+        for (int i = off; i < end; i++) {
+            if (b[i] == '|' && ++pipes == 3) return i;
+            if (b[i] == '\n') return -2;
+        }
+        return -1;
+    }
+
+    /** LEN field of a header whose third '|' is at {@code p3}. */
+    static int parseLength(byte[] b, int off, int p3) throws ProtocolException {
+        int p2 = p3 - 1;
+        while (p2 >= off && b[p2] != '|') p2--;
+        return parseInt(b, p2 + 1, p3, false);
+    }
+
+    private static Type parseType(byte[] b, int from, int to) throws ProtocolException {
+        for (Type t : TYPES) {
+            byte[] name = TYPE_BYTES[t.ordinal()];
+            if (name.length == to - from && regionEquals(b, from, name)) {
+                return t;
+            }
+        }
+        throw new ProtocolException("Unknown message type: "
+                + new String(b, from, to - from, StandardCharsets.UTF_8));
+    }
+
+    private static boolean regionEquals(byte[] b, int from, byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (b[from + i] != name[i]) return false;
+        }
+        return true;
+    }
+
+    private static int parseInt(byte[] b, int from, int to, boolean signed) throws ProtocolException {
+        int i = from;
+        boolean negative = false;
+        if (signed && i < to && b[i] == '-') {
+            negative = true;
+            i++;
+        }
+        if (i >= to || to - i > 10) {
+            throw new ProtocolException("Invalid sequence or length field");
+        }
+        long v = 0;
+        for (; i < to; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) {
+                throw new ProtocolException("Invalid sequence or length field");
+            }
+            v = v * 10 + d;
+        }
+        if (negative) v = -v;
+        if (v > Integer.MAX_VALUE || v < Integer.MIN_VALUE) {
+            throw new ProtocolException("Sequence or length out of range");
+        }
+        return (int) v;
+    }
+
+    private static int indexOf(byte[] b, int from, int to, byte c) {
+        for (int i = from; i < to; i++) {
+            if (b[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private static int digits(int v) {
+        if (v < 0) return (v == Integer.MIN_VALUE) ? 11 : 1 + digits(-v);
+        int n = 1;
+        while (v >= 10) { v /= 10; n++; }
+        return n;
+    }
+
+    private static int writeInt(int v, byte[] dst, int off) {
+        if (v == Integer.MIN_VALUE) {
+            byte[] min = Integer.toString(v).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(min, 0, dst, off, min.length);
+            return off + min.length;
+        }
+        if (v < 0) {
+            dst[off++] = '-';
+            v = -v;
+        }
+        int end = off + digits(v);
+        int i = end;
+        do {
+            dst[--i] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        return end;
+    }
+
+    /** UTF-8 size of s without encoding it. */
+    static int utf8Length(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) n += 1;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                     && Character.isLowSurrogate(s.charAt(i + 1))) { n += 4; i++; }
+            else if (Character.isSurrogate(c)) n += 1; // surrogate isolé -> '?' (comme getBytes)
+            else n += 3;
+        }
+        return n;
+    }
+
+    /** Same encoding as String.getBytes(UTF_8), without the intermediate array. */
+    private static int writeUtf8(String s, byte[] dst, int off) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                dst[off++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[off++] = (byte) (0xC0 | (c >> 6));
+                dst[off++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                       && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                dst[off++] = (byte) (0xF0 | (cp >> 18));
+                dst[off++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                dst[off++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                dst[off++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                if (Character.isSurrogate(c)) c = '?'; // comme String.getBytes(UTF_8)
+                if (c < 0x80) {
+                    dst[off++] = (byte) c;
+                    continue;
+                }
+                dst[off++] = (byte) (0xE0 | (c >> 12));
+                dst[off++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[off++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return off;
+    }
+}
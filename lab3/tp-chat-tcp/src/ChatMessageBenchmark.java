@@ -0,0 +1,58 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Micro-benchmark: String codec (readLine + split) vs byte codec (ChatFrameReader path).
+ *
+ * Plain main() with warm-up rounds, since the lab has no build tool to pull
+ * JMH in. Run with e.g. java -Xms256m ChatMessageBenchmark [iterations]
+ */
+public class ChatMessageBenchmark {
+
+    private static long sink; // empêche le JIT d'éliminer le travail
+
+    public static void main(String[] args) throws Exception {
+        int iterations = (args.length >= 1) ? Integer.parseInt(args[0]) : 2_000_000;
+
+        ChatMessage sample = ChatMessage.chat(12345, "Hello, this is a typical chat line | with a pipe, é and 😊");
+        String wireString = ChatMessage.encode(sample);
+        byte[] wireBytes = wireString.getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[ChatMessage.frameSize(sample)];
+
+        for (int round = 0; round < 5; round++) {
+            boolean report = (round == 4); // 4 tours de chauffe
+
+            long t0 = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                // ancien chemin : BufferedReader a déjà construit la ligne, puis split/parseInt/valueOf
+                String line = new String(wireBytes, StandardCharsets.UTF_8);
+                sink += ChatMessage.decode(line).seq;
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += ChatMessage.decode(wireBytes, 0, wireBytes.length).seq;
+            }
+            long t2 = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += ChatMessage.encode(sample).getBytes(StandardCharsets.UTF_8).length;
+            }
+            long t3 = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                sink += ChatMessage.encodeFrame(sample, out, 0);
+            }
+            long t4 = System.nanoTime();
+
+            if (report) {
+                print("decode(String) + line", iterations, t1 - t0);
+                print("decode(byte[])", iterations, t2 - t1);
+                print("encode(String).getBytes", iterations, t3 - t2);
+                print("encodeFrame(byte[])", iterations, t4 - t3);
+            }
+        }
+        if (sink == 42) System.out.println();
+    }
+
+    private static void print(String name, int iterations, long nanos) {
+        System.out.printf("%-26s %8.1f ns/op  %,12.0f ops/s%n",
+                name, (double) nanos / iterations, iterations * 1e9 / nanos);
+    }
+}
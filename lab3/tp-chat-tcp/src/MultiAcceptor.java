@@ -0,0 +1,168 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.util.ArrayList;
+import java.util.List;
+import javax.net.ServerSocketFactory;
+
+/**
+ * Listener with N acceptor threads, to keep up with reconnect storms.
+ *
+ * - shared mode: one listening socket, N threads blocked in accept() on it;
+ * - SO_REUSEPORT mode: N listening sockets bound to the same port, one
+ *   thread each; the kernel spreads incoming connections over the sockets
+ *   (Linux), so the acceptors do not contend on one accept queue.
+ *
+ * The handler runs on the acceptor thread and must only hand the socket off
+ * (limiter check, thread/pool submit). Works with SSLServerSocketFactory too:
+ * the TLS handshake is done later by the connection thread.
+ *
+ * Configuration: -Daccept.threads (default 1), -Daccept.reusePort
+ * (default false), -Daccept.backlog (default 50, as new ServerSocket(port)).
+ */
+public class MultiAcceptor implements Closeable {
+
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+
+    /** Called for each accepted socket, on an acceptor thread. */
+    @FunctionalInterface
+    public interface Handler {
+        void accepted(Socket socket) throws IOException;
+    }
+
+    private final String name;
+    private final int port;
+    private final int acceptors;
+    private final boolean reusePort;
+    private final int backlog;
+    private final ServerSocketFactory factory;
+
+    private final List<ServerSocket> sockets = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean closed;
+
+    public MultiAcceptor(String name, int port, int acceptors, boolean reusePort, int backlog,
+                         ServerSocketFactory factory) {
+        this.name = name;
+        this.port = port;
+        this.acceptors = Math.max(1, acceptors);
+        this.reusePort = reusePort;
+        this.backlog = backlog;
+        this.factory = factory;
+    }
+
+    public static MultiAcceptor fromSystemProperties(String name, int port, ServerSocketFactory factory) {
+        return new MultiAcceptor(name, port,
+                Integer.getInteger("accept.threads", 1),
+                Boolean.getBoolean("accept.reusePort"),
+                Integer.getInteger("accept.backlog", 50),
+                factory);
+    }
+
+    /** Bind the listening socket(s). */
+    public synchronized MultiAcceptor bind() throws IOException {
+        int count = reusePort ? acceptors : 1;
+        try {
+            for (int i = 0; i < count; i++) {
+                ServerSocket ss = factory.createServerSocket(); // non lié
+                if (reusePort) {
+                    if (!ss.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                        ss.close();
+                        throw new IOException("SO_REUSEPORT not supported on this platform");
+                    }
+                    ss.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                }
+                ss.bind(new InetSocketAddress(port), backlog);
+                sockets.add(ss);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        LOG.info("%s: %d acceptor(s) on port %d (%s, backlog %d)", name, acceptors, port,
+                reusePort ? count + " sockets SO_REUSEPORT" : "shared socket", backlog);
+        return this;
+    }
+
+    /** Listening socket(s), e.g. to set SSL parameters. */
+    public synchronized List<ServerSocket> getSockets() {
+        return new ArrayList<>(sockets);
+    }
+
+    /** Start the acceptor threads and return. */
+    public synchronized void start(Handler handler) {
+        if (sockets.isEmpty()) {
+            throw new IllegalStateException("bind() first");
+        }
+        for (int i = 0; i < acceptors; i++) {
+            ServerSocket ss = sockets.get(i % sockets.size());
+            Thread t = new Thread(() -> acceptLoop(ss, handler), name + "-acceptor-" + i);
+            threads.add(t);
+            t.start();
+        }
+    }
+
+    /** Start the acceptors and wait until they stop (after close()). */
+    public void run(Handler handler) throws InterruptedException {
+        start(handler);
+        List<Thread> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(threads);
+        }
+        for (Thread t : snapshot) {
+            t.join();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (ServerSocket ss : sockets) {
+            try {
+                ss.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void acceptLoop(ServerSocket ss, Handler handler) {
+        while (!closed) {
+            Socket s;
+            try {
+                s = ss.accept();
+            } catch (IOException e) {
+                if (closed || ss.isClosed()) {
+                    return;
+                }
+                // ex. EMFILE pendant une tempête : on continue, sans boucler à vide
+                LOG.warn("%s: accept failed: %s", name, e.getMessage());
+                pause();
+                continue;
+            }
+            try {
+                handler.accepted(s);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("%s: dropping accepted connection: %s", name, e);
+                try {
+                    s.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,3 +1,4 @@
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -7,12 +8,17 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * TCP client for the lab.
  * Enhancements for section 3.9:
  * - Application-level messages with ChatMessage (type, seq, length)
  * - Better error reporting for protocol and network errors
+ * - --bench: pipelined throughput / echo latency test
  */
 public class NewTCPClient {
 
@@ -129,9 +135,103 @@ public class NewTCPClient {
         }
     }
 
+    /**
+     * Pipelined throughput test: streams {@code count} CHAT frames without
+     * waiting for each echo (at most {@code window} in flight), a second
+     * thread reads the SYSTEM echoes. Reports msgs/sec and p50/p99 echo latency.
+     */
+    public void benchmark(int count, int payloadSize, int window) throws Exception {
+        char[] fill = new char[payloadSize];
+        Arrays.fill(fill, 'x');
+        String payload = new String(fill);
+        AtomicLongArray sentAt = new AtomicLongArray(count + 1); // écrit/lu par 2 threads
+        long[] latency = new long[count];
+        Semaphore inFlight = new Semaphore(window);
+
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), 3000);
+            socket.setSoTimeout(30_000);
+            socket.setTcpNoDelay(true);
+            System.out.printf("Pipelined benchmark: %d msgs, payload=%d bytes, window=%d%n",
+                    count, payloadSize, window);
+
+            ChatFrameReader in = new ChatFrameReader(socket.getInputStream(), 1 << 20);
+            int[] received = new int[1];
+            long[] errors = new long[1];
+            Thread reader = new Thread(() -> {
+                try {
+                    while (received[0] + errors[0] < count) { // une erreur compte comme une réponse
+                        ChatMessage echo;
+                        try {
+                            echo = in.read();
+                        } catch (ProtocolException pe) {
+                            // trame illisible sautée : c'était quand même un écho, sa place se libère
+                            errors[0]++;
+                            inFlight.release();
+                            continue;
+                        }
+                        if (echo == null) break;
+                        if (echo.type == ChatMessage.Type.ERROR) {
+                            errors[0]++;
+                        } else if (echo.seq > 0 && echo.seq <= count) {
+                            latency[received[0]++] = System.nanoTime() - sentAt.get(echo.seq);
+                        }
+                        inFlight.release();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Reader stopped: " + e.getMessage());
+                }
+            }, "bench-reader");
+            reader.start();
+
+            BufferedOutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            byte[] frame = new byte[ChatMessage.frameSize(ChatMessage.chat(Integer.MAX_VALUE, payload))];
+            long start = System.nanoTime();
+            for (int seq = 1; seq <= count; seq++) {
+                if (!inFlight.tryAcquire()) {
+                    out.flush(); // fenêtre pleine : on pousse ce qui est en attente
+                    if (!acquireWhileAlive(inFlight, reader)) {
+                        System.err.printf("Reader thread stopped, aborting after %d messages sent%n", seq - 1);
+                        break;
+                    }
+                }
+                int len = ChatMessage.encodeFrame(ChatMessage.chat(seq, payload), frame, 0);
+                sentAt.set(seq, System.nanoTime());
+                out.write(frame, 0, len);
+            }
+            out.flush();
+            reader.join();
+            long elapsed = System.nanoTime() - start;
+
+            int n = received[0];
+            long[] sorted = Arrays.copyOf(latency, n);
+            Arrays.sort(sorted);
+            System.out.printf("Received %d/%d echoes (%d errors) in %d ms -> %,.0f msgs/sec%n",
+                    n, count, errors[0], elapsed / 1_000_000, n * 1e9 / elapsed);
+            if (n > 0) {
+                System.out.printf("Echo latency: p50=%d us, p99=%d us, max=%d us%n",
+                        sorted[(int) (n * 0.50)] / 1000,
+                        sorted[Math.min(n - 1, (int) (n * 0.99))] / 1000,
+                        sorted[n - 1] / 1000);
+            }
+        }
+    }
+
+    /**
+     * Semaphore.acquire() that gives up once the reader thread is gone
+     * (EOF, read timeout, connection reset): nobody is left to release.
+     */
+    private static boolean acquireWhileAlive(Semaphore permits, Thread reader) throws InterruptedException {
+        while (!permits.tryAcquire(1, TimeUnit.SECONDS)) {
+            if (!reader.isAlive()) return false;
+        }
+        return true;
+    }
+
     public static void main(String[] args) {
         if (args.length < 2) {
             System.err.println("Usage: java TCPClient <host> <port>");
+            System.err.println("       java NewTCPClient <host> <port> --bench [count] [payloadBytes] [window]");
             return;
         }
 
@@ -139,6 +239,17 @@ public class NewTCPClient {
         int port = Integer.parseInt(args[1]);
 
         NewTCPClient client = new NewTCPClient(host, port);
+        if (args.length >= 3 && "--bench".equals(args[2])) {
+            int count = (args.length >= 4) ? Integer.parseInt(args[3]) : 100_000;
+            int payload = (args.length >= 5) ? Integer.parseInt(args[4]) : 64;
+            int window = (args.length >= 6) ? Integer.parseInt(args[5]) : 1000;
+            try {
+                client.benchmark(count, payload, window);
+            } catch (Exception e) {
+                System.err.println("Benchmark failed: " + e.getMessage());
+            }
+            return;
+        }
         client.start();
     }
 }
\ No newline at end of file
@@ -1,17 +1,14 @@
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.net.SocketTimeoutException;
-import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ServerSocketFactory;
 
 /**
  * Multi-client TCP echo server for the lab.
@@ -19,18 +16,27 @@ import java.util.concurrent.atomic.AtomicInteger;
  * - application-level message format (ChatMessage)
  * - per-client sessions with duration and inactivity timeout
  * - better protocol error reporting
+ * - length-framed, pipelined echo path (one flush per read burst)
+ * - graceful draining shutdown (Ctrl-C / SIGTERM)
+ * - multiple acceptor threads / SO_REUSEPORT listeners (MultiAcceptor)
  */
 public class NewTCPServer {
 
     private static final int DEFAULT_PORT = 8080;
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
 
-    // Session timeout for inactivity (3.9.2)
+    // Session timeout for inactivity (3.9.2), enforced by the shared reaper
     private static final int SESSION_TIMEOUT_MS = 60_000; // 60 seconds
+    private static final IdleConnectionReaper REAPER = IdleConnectionReaper.getDefault();
+
+    // Largest accepted frame (header + payload), framing is done on LEN
+    private static final int MAX_FRAME_BYTES = 64 * 1024;
 
     private final int port;
     private final AtomicInteger clientCounter = new AtomicInteger(0);
-    private final Deque<String> lastMessages = new ArrayDeque<>(10);
-    private volatile boolean running = true;
+    private final Deque<HistoryEntry> lastMessages = new ArrayDeque<>(10);
+    private final GracefulShutdown drain = new GracefulShutdown("NewTCPServer");
+    private final AcceptLimiter limiter = AcceptLimiter.fromSystemProperties();
 
     public NewTCPServer(int port) {
         this.port = port;
@@ -43,49 +49,128 @@ public class NewTCPServer {
     public void launch() {
         System.out.println(this);
 
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
+        // N threads d'accept (-Daccept.threads), SO_REUSEPORT en option
+        MultiAcceptor acceptor =
+                MultiAcceptor.fromSystemProperties("NewTCPServer", port, ServerSocketFactory.getDefault());
+        try {
+            acceptor.bind();
             log("Server started on port " + port);
+            drain.addListener(acceptor);
+            drain.installShutdownHook(this::shutdown);
 
-            while (running) {
-                Socket clientSocket = serverSocket.accept();
-
-                int clientId = clientCounter.incrementAndGet();
-                String clientIp = clientSocket.getInetAddress().getHostAddress();
-
-                log("New connection from " + clientIp + " (client #" + clientId + ")");
-
-                Thread t = new Thread(new ClientHandler(clientId, clientSocket));
-                t.start();
-            }
+            acceptor.run(this::onAccept);
+            log("Server socket closed, no longer accepting.");
         } catch (IOException e) {
             log("Server error: " + e.getMessage());
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            acceptor.close();
         }
     }
 
+    /** Runs on an acceptor thread: admission, then one handler thread. */
+    private void onAccept(Socket clientSocket) throws IOException {
+        // Cap global + limite par IP, avant de créer quoi que ce soit
+        AcceptLimiter.Permit permit = limiter.admitOrClose(clientSocket);
+        if (permit == null) {
+            return;
+        }
+
+        int clientId = clientCounter.incrementAndGet();
+        String clientIp = clientSocket.getInetAddress().getHostAddress();
+
+        GracefulShutdown.Ticket ticket =
+                drain.register(clientSocket, GracefulShutdown.stopReading(clientSocket));
+        if (ticket == null) {
+            permit.release();
+            clientSocket.close(); // arrêt en cours
+            return;
+        }
+
+        log("New connection from " + clientIp + " (client #" + clientId + ")");
+
+        Thread t = new Thread(new ClientHandler(clientId, clientSocket, ticket, permit));
+        t.start();
+    }
+
+    /** Stop accepting and drain the connected clients (see GracefulShutdown). */
+    public void shutdown() {
+        drain.shutdown();
+    }
+
     private void log(String msg) {
-        String time = LocalDateTime.now()
-                .format(DateTimeFormatter.ofPattern("HH:mm:ss"));
-        System.out.println("[" + time + "] " + msg);
+        LOG.info(msg);
     }
 
-    private synchronized void addToHistory(String message) {
-        if (lastMessages.size() == 10) {
-            lastMessages.removeFirst();
+    /**
+     * History entry, formatted only when displayed: building the tagged
+     * String for every echoed message was a large part of the per-message cost.
+     */
+    private static final class HistoryEntry {
+        final int clientId;
+        final String clientIp;
+        final ChatMessage msg;
+
+        HistoryEntry(int clientId, String clientIp, ChatMessage msg) {
+            this.clientId = clientId;
+            this.clientIp = clientIp;
+            this.msg = msg;
+        }
+
+        @Override
+        public String toString() {
+            return tag(clientId, clientIp, msg);
+        }
+    }
+
+    private static String tag(int clientId, String clientIp, ChatMessage msg) {
+        return "[#" + clientId + " " + clientIp + " seq=" + msg.seq + " type=" + msg.type
+                + " len=" + msg.length + "] " + msg.payload;
+    }
+
+    /** Add the messages of one read burst to the history (max 10), one lock per burst. */
+    private synchronized void addToHistory(List<HistoryEntry> burst) {
+        for (HistoryEntry e : burst) {
+            if (lastMessages.size() == 10) {
+                lastMessages.removeFirst();
+            }
+            lastMessages.addLast(e);
         }
-        lastMessages.addLast(message);
     }
 
     /**
      * Handle a single client session (3.9.2 Session Management).
+     *
+     * Pipelined: every frame already in the read buffer is decoded and its
+     * echo encoded into the output buffer; the socket is flushed once when
+     * the buffer holds no more complete frame, i.e. once per read burst.
      */
     private class ClientHandler implements Runnable {
         private final int clientId;
         private final Socket socket;
+        private final GracefulShutdown.Ticket ticket;
+        private final AcceptLimiter.Permit permit;
 
-        ClientHandler(int clientId, Socket socket) {
+        // Echo frames of the current burst
+        private byte[] outBuf = new byte[8192];
+        private int outLen;
+
+        ClientHandler(int clientId, Socket socket, GracefulShutdown.Ticket ticket,
+                      AcceptLimiter.Permit permit) {
             this.clientId = clientId;
             this.socket = socket;
+            this.ticket = ticket;
+            this.permit = permit;
+        }
+
+        private void queue(ChatMessage msg) {
+            int size = ChatMessage.frameSize(msg);
+            if (outLen + size > outBuf.length) {
+                outBuf = Arrays.copyOf(outBuf, Math.max(outBuf.length * 2, outLen + size));
+            }
+            outLen = ChatMessage.encodeFrame(msg, outBuf, outLen);
         }
 
         @Override
@@ -93,82 +178,100 @@ public class NewTCPServer {
             String clientIp = socket.getInetAddress().getHostAddress();
             long startTime = System.currentTimeMillis();
 
-            try {
-                // Inactivity timeout (3.9.2)
-                socket.setSoTimeout(SESSION_TIMEOUT_MS);
-
-                try (BufferedReader in = new BufferedReader(
-                            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-                     PrintWriter out = new PrintWriter(
-                            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
-
-                    String wire;
-                    long lastActivity = startTime;
-
-                    while (true) {
-                        try {
-                            wire = in.readLine();
-                        } catch (SocketTimeoutException e) {
-                            log("Session timeout for client #" + clientId + " (" + clientIp +
-                                ") after " + SESSION_TIMEOUT_MS + " ms of inactivity");
-                            break;
-                        }
+            // Inactivity timeout (3.9.2): the reaper closes the socket, which
+            // unblocks the read below. No timer or SO_TIMEOUT per connection.
+            AtomicBoolean timedOut = new AtomicBoolean();
+            IdleConnectionReaper.Handle idle = REAPER.register("client #" + clientId, SESSION_TIMEOUT_MS, () -> {
+                timedOut.set(true);
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            });
 
-                        if (wire == null) {
-                            // Client closed connection
+            try {
+                socket.setTcpNoDelay(true); // on regroupe déjà nous-mêmes les écritures
+
+                // Frames are read from the raw bytes and delimited by LEN (no readLine)
+                ChatFrameReader in = new ChatFrameReader(socket.getInputStream(), MAX_FRAME_BYTES);
+                OutputStream out = socket.getOutputStream();
+                List<HistoryEntry> burst = new ArrayList<>();
+
+                while (true) {
+                    try {
+                        // Decode and validate the message (3.9.1 + 3.9.3)
+                        ChatMessage msg = in.read();
+
+                        if (msg == null) {
+                            // Client closed connection, or input shut down by the drain:
+                            // pending echoes + notice still go out below
+                            if (drain.isShuttingDown()) {
+                                queue(new ChatMessage(ChatMessage.Type.SYSTEM, 0, "Server shutting down"));
+                            }
                             break;
                         }
 
-                        lastActivity = System.currentTimeMillis();
-
-                        try {
-                            // Decode and validate the message (3.9.1 + 3.9.3)
-                            ChatMessage msg = ChatMessage.decode(wire);
-
-                            String tagged = String.format(
-                                    "[#%d %s seq=%d type=%s len=%d] %s",
-                                    clientId, clientIp, msg.seq, msg.type, msg.length, msg.payload);
+                        idle.touch();
 
-                            System.out.println(tagged);
-                            addToHistory(tagged);
+                        if (LOG.sampleTraffic()) LOG.info(tag(clientId, clientIp, msg));
+                        burst.add(new HistoryEntry(clientId, clientIp, msg));
 
-                            // Echo back as SYSTEM message to show we parsed it
-                            ChatMessage echoMsg = new ChatMessage(
-                                    ChatMessage.Type.SYSTEM,
-                                    msg.seq,
-                                    msg.payload);
+                        // Echo back as SYSTEM message to show we parsed it
+                        queue(new ChatMessage(ChatMessage.Type.SYSTEM, msg.seq, msg.payload));
 
-                            out.println(ChatMessage.encode(echoMsg));
+                    } catch (ProtocolException pe) {
+                        log("Protocol error with client #" + clientId + " (" + clientIp + "): "
+                                + pe.getMessage());
 
-                        } catch (ProtocolException pe) {
-                            log("Protocol error with client #" + clientId + " (" + clientIp + "): "
-                                    + pe.getMessage());
+                        // Send an ERROR message to the client
+                        queue(new ChatMessage(
+                                ChatMessage.Type.ERROR,
+                                0,
+                                "Protocol error: " + pe.getMessage()));
+                    }
 
-                            // Send an ERROR message to the client
-                            ChatMessage err = new ChatMessage(
-                                    ChatMessage.Type.ERROR,
-                                    0,
-                                    "Protocol error: " + pe.getMessage());
-                            out.println(ChatMessage.encode(err));
-                        }
+                    // Fin de la rafale : une seule écriture + flush pour tous les échos
+                    if (!in.hasBufferedFrame()) {
+                        flushBurst(out, burst);
                     }
+                }
+                flushBurst(out, burst);
 
-                    long endTime = System.currentTimeMillis();
-                    long durationSec = (endTime - startTime) / 1000;
-                    log("Session for client #" + clientId + " (" + clientIp + ") closed. Duration = "
-                            + durationSec + " s");
+                long endTime = System.currentTimeMillis();
+                long durationSec = (endTime - startTime) / 1000;
+                log("Session for client #" + clientId + " (" + clientIp + ") closed. Duration = "
+                        + durationSec + " s");
 
-                }
             } catch (IOException e) {
-                log("Connection error with client #" + clientId + " (" + clientIp + "): " + e.getMessage());
+                if (timedOut.get()) {
+                    log("Session timeout for client #" + clientId + " (" + clientIp +
+                        ") after " + SESSION_TIMEOUT_MS + " ms of inactivity");
+                } else {
+                    log("Connection error with client #" + clientId + " (" + clientIp + "): " + e.getMessage());
+                }
             } finally {
+                idle.cancel();
                 try {
                     socket.close();
                 } catch (IOException ignored) {
                 }
+                permit.release();
+                ticket.done();
                 log("Client #" + clientId + " (" + clientIp + ") disconnected");
             }
         }
+
+        private void flushBurst(OutputStream out, List<HistoryEntry> burst) throws IOException {
+            if (outLen > 0) {
+                out.write(outBuf, 0, outLen);
+                out.flush();
+                outLen = 0;
+            }
+            if (!burst.isEmpty()) {
+                addToHistory(burst);
+                burst.clear();
+            }
+        }
     }
 
     @Override
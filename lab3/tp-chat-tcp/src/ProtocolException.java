@@ -0,0 +1,14 @@
+/**
+ * Custom exception used for protocol errors (3.9.3 Advanced Error Handling).
+ */
+class ProtocolException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public ProtocolException(String message) {
+        super(message);
+    }
+
+    public ProtocolException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -6,8 +6,6 @@ import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -16,6 +14,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class TCPServer {
 
     private static final int DEFAULT_PORT = 8080;
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
 
     private final int port;
     private final AtomicInteger clientCounter = new AtomicInteger(0);
@@ -58,9 +57,7 @@ public class TCPServer {
 
     /** Small helper to format timestamps in logs. */
     private void log(String msg) {
-        String time = LocalDateTime.now()
-                .format(DateTimeFormatter.ofPattern("HH:mm:ss"));
-        System.out.println("[" + time + "] " + msg);
+        LOG.info(msg);
     }
 
     /** Add a message to the history buffer (max 10). */
@@ -95,8 +92,8 @@ public class TCPServer {
                 while ((line = in.readLine()) != null) {
                     String tagged = "[#" + clientId + " " + clientIp + "] " + line;
 
-                    // Display on server console
-                    System.out.println(tagged);
+                    // Display on server console (async, sampled)
+                    if (LOG.sampleTraffic()) LOG.info(tagged);
 
                     // Store in history
                     addToHistory(tagged);
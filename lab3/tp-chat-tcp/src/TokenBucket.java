@@ -0,0 +1,62 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket (GCRA form): the whole state is one AtomicLong,
+ * the "theoretical arrival time" of the next token, updated with a CAS.
+ *
+ * - rate: tokens added per second;
+ * - burst: bucket capacity (tokens that can be taken at once after idling).
+ *
+ * A bucket whose TAT is in the past is full, i.e. in the same state as a
+ * new one: tables of buckets can drop such entries (see isFull()).
+ */
+public class TokenBucket {
+
+    private final long intervalNanos;  // temps pour regagner un jeton
+    private final long toleranceNanos; // (burst - 1) * interval
+    private final AtomicLong tat = new AtomicLong(Long.MIN_VALUE);
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate and burst must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (1e9 / ratePerSecond));
+        this.toleranceNanos = (burst - 1) * intervalNanos;
+    }
+
+    /** Take one token if available. */
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /** Take n tokens at once, or none. */
+    public boolean tryAcquire(int n) {
+        long now = System.nanoTime();
+        long cost = n * intervalNanos;
+        while (true) {
+            long current = tat.get();
+            long base = (current == Long.MIN_VALUE || current - now < 0) ? now : current;
+            long next = base + cost;
+            if (next - now > toleranceNanos + intervalNanos) {
+                return false; // pas assez de jetons, l'état n'est pas modifié
+            }
+            if (tat.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /** Nanoseconds until one token is available (0 if available now). */
+    public long nanosUntilAvailable() {
+        long now = System.nanoTime();
+        long current = tat.get();
+        if (current == Long.MIN_VALUE) return 0;
+        return Math.max(0, current - now - toleranceNanos);
+    }
+
+    /** True if the bucket has refilled completely (nothing taken recently). */
+    public boolean isFull() {
+        long current = tat.get();
+        return current == Long.MIN_VALUE || current - System.nanoTime() <= 0;
+    }
+}
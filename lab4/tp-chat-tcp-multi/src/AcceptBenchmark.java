@@ -0,0 +1,100 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ServerSocketFactory;
+
+/**
+ * Connection-storm benchmark for MultiAcceptor, on loopback.
+ *
+ * Many client threads connect in a loop; each accepted socket costs
+ * workMicros of CPU on the acceptor thread (admission, thread start...) and
+ * is then reset (SO_LINGER 0, so no TIME_WAIT piles up on either side).
+ * Compares, for the same duration:
+ * - 1 acceptor thread on 1 socket (the old accept loop);
+ * - N acceptor threads sharing 1 socket;
+ * - N sockets with SO_REUSEPORT, one thread each.
+ *
+ * Usage: java AcceptBenchmark [acceptors] [clients] [seconds] [workMicros] [port]
+ */
+public class AcceptBenchmark {
+
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+
+    public static void main(String[] args) throws Exception {
+        int acceptors = (args.length >= 1) ? Integer.parseInt(args[0])
+                : Math.max(2, Runtime.getRuntime().availableProcessors());
+        int clients = (args.length >= 2) ? Integer.parseInt(args[1]) : 64;
+        int seconds = (args.length >= 3) ? Integer.parseInt(args[2]) : 5;
+        long workMicros = (args.length >= 4) ? Long.parseLong(args[3]) : 20;
+        int port = (args.length >= 5) ? Integer.parseInt(args[4]) : 9500;
+
+        System.out.printf("AcceptBenchmark: %d acceptors, %d clients, %d s per run, %d us work per accept%n",
+                acceptors, clients, seconds, workMicros);
+
+        run("1 thread, 1 socket", 1, false, clients, seconds, workMicros, port);
+        run(acceptors + " threads, shared socket", acceptors, false, clients, seconds, workMicros, port + 1);
+        run(acceptors + " sockets, SO_REUSEPORT", acceptors, true, clients, seconds, workMicros, port + 2);
+        LOG.flush(1000);
+    }
+
+    private static void run(String label, int acceptors, boolean reusePort, int clients,
+                            int seconds, long workMicros, int port) throws Exception {
+        AtomicLong accepted = new AtomicLong();
+        AtomicLong connectErrors = new AtomicLong();
+        long workNanos = TimeUnit.MICROSECONDS.toNanos(workMicros);
+
+        // Backlog large : on mesure le débit d'accept, pas les refus SYN
+        MultiAcceptor acceptor = new MultiAcceptor("bench", port, acceptors, reusePort, 1024,
+                ServerSocketFactory.getDefault()).bind();
+        acceptor.start(s -> {
+            spin(workNanos);
+            accepted.incrementAndGet();
+            s.setSoLinger(true, 0);
+            s.close();
+        });
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Thread t = new Thread(() -> {
+                InetSocketAddress addr = new InetSocketAddress("127.0.0.1", port);
+                while (System.nanoTime() - end < 0) {
+                    try (Socket s = new Socket()) {
+                        s.connect(addr, 1000);
+                        s.setSoTimeout(1000);
+                        InputStream in = s.getInputStream();
+                        in.read(); // EOF / RST quand le serveur a traité la connexion
+                    } catch (IOException e) {
+                        if (!"Connection reset".equals(e.getMessage())) {
+                            connectErrors.incrementAndGet();
+                        }
+                    }
+                }
+            }, "bench-client-" + i);
+            threads.add(t);
+            t.start();
+        }
+        long start = System.nanoTime();
+        for (Thread t : threads) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        acceptor.close();
+
+        System.out.printf("  %-28s %9.0f accepts/s  (%d accepted, %d client errors)%n",
+                label, accepted.get() * 1e9 / elapsed, accepted.get(), connectErrors.get());
+    }
+
+    /** Stand-in for the per-accept work of a real server, without sleeping. */
+    private static void spin(long nanos) {
+        long until = System.nanoTime() + nanos;
+        while (System.nanoTime() - until < 0) {
+            Thread.onSpinWait();
+        }
+    }
+}
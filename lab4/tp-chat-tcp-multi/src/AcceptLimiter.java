@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control right after accept():
+ * - global cap on open connections;
+ * - per source IP: token bucket on new connections (rate + burst) and a cap
+ *   on its open connections.
+ *
+ * Rejected sockets are reset at once (SO_LINGER 0: no TIME_WAIT kept on our
+ * side, no thread started). The per-IP table only keeps hosts with open
+ * connections or a bucket still refilling; a daemon thread drops the others.
+ *
+ * Configuration: -Dlimit.maxConnections (default 10000), -Dlimit.perIpRate
+ * (new connections/s, default 20), -Dlimit.perIpBurst (default 40),
+ * -Dlimit.perIpMax (open connections per IP, default 256).
+ */
+public class AcceptLimiter {
+
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+    private static final long SWEEP_PERIOD_MS = 10_000;
+
+    /** Admission of one connection; release() when it is closed. */
+    public final class Permit {
+        private final IpEntry entry;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(IpEntry entry) {
+            this.entry = entry;
+        }
+
+        /** Idempotent. */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                entry.open.decrementAndGet();
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    /** Per-IP state: one bucket + open count (-1 = removed from the table). */
+    private final class IpEntry {
+        final TokenBucket bucket = new TokenBucket(perIpRate, perIpBurst);
+        final AtomicInteger open = new AtomicInteger();
+    }
+
+    private final int maxConnections;
+    private final double perIpRate;
+    private final int perIpBurst;
+    private final int perIpMax;
+
+    private final Map<InetAddress, IpEntry> table = new ConcurrentHashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejectedGlobal = new AtomicLong();
+    private final AtomicLong rejectedRate = new AtomicLong();
+    private final AtomicLong rejectedPerIp = new AtomicLong();
+
+    public AcceptLimiter(int maxConnections, double perIpRate, int perIpBurst, int perIpMax) {
+        this.maxConnections = maxConnections;
+        this.perIpRate = perIpRate;
+        this.perIpBurst = perIpBurst;
+        this.perIpMax = perIpMax;
+
+        Thread sweeper = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(SWEEP_PERIOD_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                sweep();
+            }
+        }, "AcceptLimiter-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    public static AcceptLimiter fromSystemProperties() {
+        return new AcceptLimiter(
+                Integer.getInteger("limit.maxConnections", 10_000),
+                Double.parseDouble(System.getProperty("limit.perIpRate", "20")),
+                Integer.getInteger("limit.perIpBurst", 40),
+                Integer.getInteger("limit.perIpMax", 256));
+    }
+
+    /**
+     * Admit the freshly accepted socket, or reset it and return null.
+     * Called on the accept thread: no blocking, no allocation for a known IP.
+     */
+    public Permit admitOrClose(Socket socket) {
+        InetAddress ip = socket.getInetAddress();
+
+        if (active.incrementAndGet() > maxConnections) {
+            active.decrementAndGet();
+            reject(socket, rejectedGlobal, "global cap " + maxConnections);
+            return null;
+        }
+
+        while (true) {
+            IpEntry e = table.computeIfAbsent(ip, k -> new IpEntry());
+            if (!e.bucket.tryAcquire()) {
+                active.decrementAndGet();
+                reject(socket, rejectedRate, "rate limit for " + ip.getHostAddress());
+                return null;
+            }
+            int open = e.open.get();
+            while (open >= 0 && open < perIpMax && !e.open.compareAndSet(open, open + 1)) {
+                open = e.open.get();
+            }
+            if (open < 0) {
+                continue; // entrée retirée par le sweeper entre-temps : on recommence
+            }
+            if (open >= perIpMax) {
+                active.decrementAndGet();
+                reject(socket, rejectedPerIp, perIpMax + " open connections from " + ip.getHostAddress());
+                return null;
+            }
+            admitted.incrementAndGet();
+            return new Permit(e);
+        }
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public String getStats() {
+        return String.format("active=%d/%d, ips=%d, admitted=%d, rejected(global=%d, rate=%d, perIp=%d)",
+                active.get(), maxConnections, table.size(), admitted.get(),
+                rejectedGlobal.get(), rejectedRate.get(), rejectedPerIp.get());
+    }
+
+    private void reject(Socket socket, AtomicLong counter, String reason) {
+        long n = counter.incrementAndGet();
+        try {
+            socket.setSoLinger(true, 0); // RST : rien ne reste côté serveur
+            socket.close();
+        } catch (IOException ignored) {
+        }
+        // Pas une ligne par rejet pendant une tempête de connexions
+        if (Long.bitCount(n) == 1) {
+            LOG.warn("Connection rejected (%s) | %s", reason, getStats());
+        }
+    }
+
+    /** Drop idle hosts: no open connection and a full bucket. */
+    private void sweep() {
+        for (Map.Entry<InetAddress, IpEntry> me : table.entrySet()) {
+            IpEntry e = me.getValue();
+            if (e.bucket.isFull() && e.open.compareAndSet(0, -1)) {
+                table.remove(me.getKey(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous logger shared by the servers of the lab.
+ *
+ * The receiving threads only claim a slot in a bounded lock-free ring buffer
+ * and store the format string + arguments. A single background thread does
+ * the String.format(), the timestamp and the console I/O, so per-message
+ * logging no longer runs on the hot loop. When the ring is full the line is
+ * dropped (and counted) instead of blocking the caller.
+ *
+ * Configuration with system properties:
+ *   -Dlog.level=DEBUG|INFO|WARN|ERROR|OFF  (default INFO)
+ *   -Dlog.sample=N   keep about 1 traffic line out of N (default 1 = all)
+ *   -Dlog.buffer=N   ring capacity, rounded up to a power of two (default 8192)
+ */
+public final class AsyncLogger {
+
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    // Formatter built once: DateTimeFormatter is immutable and thread-safe
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final AsyncLogger DEFAULT = new AsyncLogger(
+            System.out,
+            parseLevel(System.getProperty("log.level", "INFO")),
+            Integer.getInteger("log.sample", 1),
+            Integer.getInteger("log.buffer", 8192));
+
+    /** One pre-allocated entry of the ring (published through {@link #sequences}). */
+    private static final class Slot {
+        Level level;
+        long timeMillis;
+        String format;
+        Object[] args;
+    }
+
+    private final PrintStream out;
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();    // next position claimed by producers
+    private final AtomicLong written = new AtomicLong(); // positions consumed by the writer
+    private final AtomicLong dropped = new AtomicLong();
+    private long head;                                   // writer thread only
+
+    private volatile Level level;
+    private volatile int sampleEvery;
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+    private final Thread writer;
+
+    // Cache of the "[HH:mm:ss] " prefix, recomputed once per second (writer thread only)
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedPrefix = "";
+
+    public AsyncLogger(PrintStream out, Level level, int sampleEvery, int capacity) {
+        int cap = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.out = out;
+        this.level = level;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.slots = new Slot[cap];
+        this.sequences = new AtomicLongArray(cap);
+        this.mask = cap - 1;
+        for (int i = 0; i < cap; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+
+        this.writer = new Thread(this::writerLoop, "AsyncLogger-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /** -Dlog.level value; a typo falls back to INFO instead of failing class init. */
+    private static Level parseLevel(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("AsyncLogger: unknown log.level '" + name + "', using INFO");
+            return Level.INFO;
+        }
+    }
+
+    /** Logger used by the servers (configured from system properties). */
+    public static AsyncLogger getDefault() {
+        return DEFAULT;
+    }
+
+    static {
+        // Ne pas perdre les dernières lignes quand la JVM s'arrête
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> DEFAULT.flush(1000)));
+    }
+
+    // ================= CONFIG =================
+
+    public void setLevel(Level level) { this.level = level; }
+    public Level getLevel() { return level; }
+    public void setSampleEvery(int n) { this.sampleEvery = Math.max(1, n); }
+    public long getDroppedCount() { return dropped.get(); }
+
+    public boolean isEnabled(Level lvl) {
+        return lvl != Level.OFF && lvl.ordinal() >= level.ordinal();
+    }
+
+    /**
+     * Guard for per-message (traffic) lines: true if INFO is enabled and this
+     * message is picked by the sampler. Call it before building the arguments.
+     */
+    public boolean sampleTraffic() {
+        if (!isEnabled(Level.INFO)) return false;
+        int n = sampleEvery;
+        return n == 1 || ThreadLocalRandom.current().nextInt(n) == 0;
+    }
+
+    // ================= API =================
+    // Without arguments the message is written as is (no format parsing).
+
+    public void debug(String format, Object... args) { log(Level.DEBUG, format, args); }
+    public void info(String format, Object... args)  { log(Level.INFO, format, args); }
+    public void warn(String format, Object... args)  { log(Level.WARN, format, args); }
+    public void error(String format, Object... args) { log(Level.ERROR, format, args); }
+
+    public void log(Level lvl, String format, Object... args) {
+        if (!isEnabled(lvl)) return;
+        if (closed) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        long pos;
+        int idx;
+        while (true) {
+            pos = tail.get();
+            idx = (int) (pos & mask);
+            long diff = sequences.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) break;
+            } else if (diff < 0) {
+                // ring plein : on jette plutôt que de bloquer le thread réseau
+                dropped.incrementAndGet();
+                return;
+            }
+            // diff > 0 : un autre producteur a pris la place, on réessaie
+        }
+
+        Slot slot = slots[idx];
+        slot.level = lvl;
+        slot.timeMillis = System.currentTimeMillis();
+        slot.format = format;
+        slot.args = args;
+        sequences.set(idx, pos + 1); // publication vers le writer
+
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /** Wait (at most timeoutMs) until every line logged so far has been written. */
+    public boolean flush(long timeoutMs) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (written.get() < target) {
+            if (System.nanoTime() > deadline) return false;
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+
+    /**
+     * Write what is pending (at most timeoutMs) and stop the writer thread.
+     * Lines logged afterwards are dropped. For short-lived loggers (tests,
+     * benchmarks), not for the default one.
+     */
+    public void close(long timeoutMs) {
+        flush(timeoutMs);
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ================= WRITER THREAD =================
+
+    private void writerLoop() {
+        StringBuilder batch = new StringBuilder(16 * 1024);
+        while (true) {
+            int n = drainTo(batch);
+            if (n > 0) {
+                out.print(batch);
+                out.flush(); // un seul flush par lot
+                batch.setLength(0);
+                written.addAndGet(n);
+            } else if (closed) {
+                return;
+            } else {
+                writerParked = true;
+                if (sequences.get((int) (head & mask)) != head + 1) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                writerParked = false;
+            }
+        }
+    }
+
+    private int drainTo(StringBuilder sb) {
+        int n = 0;
+        while (n < 1024) {
+            int idx = (int) (head & mask);
+            if (sequences.get(idx) != head + 1) break;
+
+            Slot slot = slots[idx];
+            appendLine(sb, slot);
+            slot.format = null;
+            slot.args = null;
+            sequences.set(idx, head + slots.length); // slot libre pour le tour suivant
+            head++;
+            n++;
+        }
+        return n;
+    }
+
+    private void appendLine(StringBuilder sb, Slot slot) {
+        long second = slot.timeMillis / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedPrefix = "[" + TIME_FORMAT.format(
+                    LocalTime.ofInstant(Instant.ofEpochMilli(slot.timeMillis), ZONE)) + "] ";
+        }
+        sb.append(cachedPrefix);
+        if (slot.level != Level.INFO) {
+            sb.append(slot.level).append(' ');
+        }
+        try {
+            if (slot.args == null || slot.args.length == 0) {
+                sb.append(slot.format);
+            } else {
+                sb.append(String.format(slot.format, slot.args));
+            }
+        } catch (RuntimeException e) {
+            sb.append("(bad log format '").append(slot.format).append("': ").append(e).append(')');
+        }
+        sb.append(System.lineSeparator());
+    }
+}
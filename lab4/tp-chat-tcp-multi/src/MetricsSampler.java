@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodic server metrics (replaces printThreadStats()).
+ *
+ * The accept / client threads only bump two counters; everything else
+ * (thread CPU time, allocation rate, heap, GC) is sampled from the MXBeans by
+ * a daemon thread and the last report is served as plain text on a separate
+ * loopback port:
+ *
+ *   curl http://127.0.0.1:9080/
+ *
+ * Configuration: -Dstats.port (0 = no endpoint), -Dstats.period (ms).
+ */
+public class MetricsSampler {
+
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+    private static final MetricsSampler DEFAULT = new MetricsSampler();
+    private static final int TOP_THREADS = 10;
+
+    // Hot path: updated by the connection threads
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+
+    // Extra lines provided by the server (e.g. pool stats)
+    private final Map<String, Supplier<String>> sources = new LinkedHashMap<>();
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final com.sun.management.ThreadMXBean sunThreads =
+            (threads instanceof com.sun.management.ThreadMXBean)
+                    ? (com.sun.management.ThreadMXBean) threads : null;
+
+    // Previous sample (only touched by the sampler thread)
+    private Map<Long, Long> lastCpu = new HashMap<>();
+    private Map<Long, Long> lastAlloc = new HashMap<>();
+    private final Map<String, long[]> lastGc = new HashMap<>();
+    private long lastSampleNanos;
+    private long lastOpened;
+
+    private volatile String report = "no sample yet\n";
+    private volatile boolean started;
+
+    public static MetricsSampler getDefault() {
+        return DEFAULT;
+    }
+
+    public void connectionOpened() { opened.incrementAndGet(); }
+    public void connectionClosed() { closed.incrementAndGet(); }
+    public long activeConnections() { return opened.get() - closed.get(); }
+
+    /** Add a line to every report, e.g. register("pool", server::getStats). */
+    public synchronized void register(String name, Supplier<String> source) {
+        sources.put(name, source);
+    }
+
+    /** Start sampling (and the endpoint) using -Dstats.port / -Dstats.period. */
+    public synchronized void start(int defaultStatsPort) {
+        if (started) return;
+        started = true;
+        int statsPort = Integer.getInteger("stats.port", defaultStatsPort);
+        long periodMs = Long.getLong("stats.period", 5_000L);
+
+        if (threads.isThreadCpuTimeSupported()) threads.setThreadCpuTimeEnabled(true);
+        if (sunThreads != null && sunThreads.isThreadAllocatedMemorySupported()) {
+            sunThreads.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        sample(); // référence pour les deltas
+        Thread sampler = new Thread(() -> {
+            while (true) {
+                try { Thread.sleep(periodMs); } catch (InterruptedException e) { return; }
+                try {
+                    sample();
+                } catch (RuntimeException e) {
+                    LOG.warn("Metrics sampling failed: %s", e);
+                }
+            }
+        }, "MetricsSampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        if (statsPort > 0) startEndpoint(statsPort);
+    }
+
+    /** Last report (plain text). */
+    public String getReport() {
+        return report;
+    }
+
+    private void sample() {
+        long now = System.nanoTime();
+        double seconds = (lastSampleNanos == 0) ? 0 : (now - lastSampleNanos) / 1e9;
+        lastSampleNanos = now;
+
+        StringBuilder sb = new StringBuilder(1024);
+        long o = opened.get();
+        long c = closed.get();
+        sb.append("connections active=").append(o - c)
+          .append(" total=").append(o)
+          .append(" rate=").append(fmt(seconds > 0 ? (o - lastOpened) / seconds : 0)).append("/s\n");
+        lastOpened = o;
+
+        synchronized (this) {
+            for (Map.Entry<String, Supplier<String>> e : sources.entrySet()) {
+                sb.append(e.getKey()).append(' ').append(e.getValue().get()).append('\n');
+            }
+        }
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        sb.append("heap used=").append(heap.getUsed() >> 10).append("KB committed=")
+          .append(heap.getCommitted() >> 10).append("KB max=").append(heap.getMax() >> 10).append("KB\n");
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long count = gc.getCollectionCount();
+            long time = gc.getCollectionTime();
+            long[] prev = lastGc.put(gc.getName(), new long[] { count, time });
+            long dCount = (prev == null) ? 0 : count - prev[0];
+            long dTime = (prev == null) ? 0 : time - prev[1];
+            sb.append("gc \"").append(gc.getName()).append("\" count=").append(count)
+              .append(" (+").append(dCount).append(") time=").append(time)
+              .append("ms (+").append(dTime).append("ms)\n");
+        }
+
+        appendThreads(sb, seconds);
+        report = sb.toString();
+    }
+
+    /**
+     * Thread count, allocation rate and top threads by CPU over the interval.
+     * A thread started since the previous sample counts from zero for CPU (all
+     * its CPU time falls in the interval; on the first sample, since the
+     * thread started), but only from its second sample for the allocation
+     * rate. A thread that ended in between is not counted for its last interval.
+     */
+    private void appendThreads(StringBuilder sb, double seconds) {
+        long[] ids = threads.getAllThreadIds();
+        long[] alloc = (sunThreads != null && sunThreads.isThreadAllocatedMemoryEnabled())
+                ? sunThreads.getThreadAllocatedBytes(ids) : null;
+        boolean cpuOn = threads.isThreadCpuTimeEnabled();
+
+        Map<Long, Long> cpu = new HashMap<>(ids.length * 2);
+        Map<Long, Long> allocNow = new HashMap<>(ids.length * 2);
+        List<long[]> deltas = new ArrayList<>(); // {id, cpuDelta}
+        long allocDelta = 0;
+
+        for (int i = 0; i < ids.length; i++) {
+            long id = ids[i];
+            if (cpuOn) {
+                long t = threads.getThreadCpuTime(id);
+                if (t >= 0) {
+                    cpu.put(id, t);
+                    Long prev = lastCpu.get(id);
+                    deltas.add(new long[] { id, t - (prev != null ? prev : 0) });
+                }
+            }
+            if (alloc != null && alloc[i] >= 0) {
+                allocNow.put(id, alloc[i]);
+                Long prev = lastAlloc.get(id);
+                if (prev != null) allocDelta += alloc[i] - prev;
+            }
+        }
+        lastCpu = cpu;
+        lastAlloc = allocNow;
+
+        sb.append("threads live=").append(threads.getThreadCount())
+          .append(" daemon=").append(threads.getDaemonThreadCount())
+          .append(" peak=").append(threads.getPeakThreadCount())
+          .append(" started=").append(threads.getTotalStartedThreadCount()).append('\n');
+        if (alloc != null) {
+            sb.append("alloc rate=").append(fmt(seconds > 0 ? allocDelta / seconds / (1 << 20) : 0))
+              .append("MB/s\n");
+        }
+
+        if (!cpuOn) return;
+        deltas.sort((a, b) -> Long.compare(b[1], a[1]));
+        int n = Math.min(TOP_THREADS, deltas.size());
+        long[] topIds = new long[n];
+        for (int i = 0; i < n; i++) topIds[i] = deltas.get(i)[0];
+        ThreadInfo[] infos = threads.getThreadInfo(topIds);
+        sb.append("top threads by cpu (interval):\n");
+        for (int i = 0; i < n; i++) {
+            if (infos[i] == null) continue; // terminé entre-temps
+            long[] d = deltas.get(i);
+            sb.append("  ").append(infos[i].getThreadName())
+              .append(" cpu=").append(d[1] / 1_000_000).append("ms")
+              .append(" total=").append(cpu.get(d[0]) / 1_000_000).append("ms")
+              .append(" state=").append(infos[i].getThreadState()).append('\n');
+        }
+    }
+
+    private static String fmt(double v) {
+        return String.format("%.1f", v);
+    }
+
+    // ================== Plaintext HTTP endpoint ==================
+
+    private void startEndpoint(int statsPort) {
+        ServerSocket ss;
+        try {
+            ss = new ServerSocket(statsPort, 16, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            LOG.warn("Stats endpoint not started on port %d: %s", statsPort, e.getMessage());
+            return;
+        }
+        LOG.info("Stats endpoint on http://127.0.0.1:%d/", statsPort);
+
+        Thread t = new Thread(() -> {
+            while (true) {
+                try (Socket s = ss.accept()) {
+                    s.setSoTimeout(2000);
+                    drainRequest(s.getInputStream());
+                    byte[] body = report.getBytes(StandardCharsets.UTF_8);
+                    OutputStream out = s.getOutputStream();
+                    out.write(("HTTP/1.0 200 OK\r\n"
+                            + "Content-Type: text/plain; charset=utf-8\r\n"
+                            + "Content-Length: " + body.length + "\r\n"
+                            + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                    out.write(body);
+                    out.flush();
+                } catch (IOException e) {
+                    // un client du endpoint qui coupe ne doit pas arrêter le serveur
+                }
+            }
+        }, "StatsEndpoint");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Read the request headers (up to the blank line); the path is ignored. */
+    private static void drainRequest(InputStream in) throws IOException {
+        int state = 0; // octets consécutifs de "\r\n\r\n" (ou "\n\n")
+        int b;
+        int read = 0;
+        while ((b = in.read()) >= 0 && ++read < 8192) {
+            if (b == '\n') {
+                if (++state == 2) return;
+            } else if (b != '\r') {
+                state = 0;
+            }
+        }
+    }
+}
@@ -1,7 +1,7 @@
 import java.io.IOException;
-import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ServerSocketFactory;
 
 public class MultithreadedTCPServer {
 
@@ -9,6 +9,8 @@ public class MultithreadedTCPServer {
 
     private final int port;
     private static final AtomicInteger clientCounter = new AtomicInteger(0);
+    private final GracefulShutdown drain = new GracefulShutdown("MultithreadedTCPServer");
+    private final AcceptLimiter limiter = AcceptLimiter.fromSystemProperties();
 
     public MultithreadedTCPServer(int port) {
         this.port = port;
@@ -21,37 +23,53 @@ public class MultithreadedTCPServer {
     public void launch() {
         System.out.println(this);
 
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
+        // N threads d'accept (-Daccept.threads), SO_REUSEPORT en option
+        MultiAcceptor acceptor = MultiAcceptor.fromSystemProperties(
+                "MultithreadedTCPServer", port, ServerSocketFactory.getDefault());
+        try {
+            acceptor.bind();
             System.out.println("Multithreaded Server started on port " + port);
 
-            while (true) {
-                // Thread principal : accepte les connexions
-                Socket clientSocket = serverSocket.accept();
+            // Monitoring (section 6.2 du TP) : échantillonné à part, plus sur le chemin d'accept
+            MetricsSampler metrics = MetricsSampler.getDefault();
+            metrics.register("limiter", limiter::getStats);
+            metrics.start(port + 1000);
 
-                // ID unique et thread-safe
-                int clientId = clientCounter.incrementAndGet();
+            drain.addListener(acceptor);
+            drain.installShutdownHook();
 
-                // Un thread par client (Step 3 du TP)
-                ConnectionThread clientThread =
-                        new ConnectionThread(clientSocket, clientId);
-                clientThread.start();
-
-                // Monitoring des threads (section 6.2 du TP)
-                printThreadStats();
-            }
+            acceptor.run(this::onAccept);
+            System.out.println("Server socket closed, no longer accepting.");
         } catch (IOException e) {
             System.err.println("Server error: " + e.getMessage());
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            acceptor.close();
+        }
+    }
+
+    /** Acceptor thread: admission, then one thread per client. */
+    private void onAccept(Socket clientSocket) {
+        // Cap global + limite par IP, avant de créer le thread
+        AcceptLimiter.Permit permit = limiter.admitOrClose(clientSocket);
+        if (permit == null) {
+            return;
         }
+
+        // ID unique et thread-safe
+        int clientId = clientCounter.incrementAndGet();
+
+        // Un thread par client (Step 3 du TP)
+        ConnectionThread clientThread =
+                new ConnectionThread(clientSocket, clientId, drain, permit);
+        clientThread.start();
     }
 
-    // Méthode demandée dans 6.2.1 "Monitoring Implementation" du TP :contentReference[oaicite:8]{index=8}
-    private void printThreadStats() {
-        Runtime runtime = Runtime.getRuntime();
-        System.out.println("=== Thread Statistics ===");
-        System.out.println(" Active threads : " + (Thread.activeCount() - 1));
-        System.out.println(" Memory usage : " +
-                (runtime.totalMemory() - runtime.freeMemory()) / 1024 + " KB");
+    /** Stop accepting, let the clients finish, force-close after the drain timeout. */
+    public void shutdown() {
+        drain.shutdown();
     }
 
     @Override
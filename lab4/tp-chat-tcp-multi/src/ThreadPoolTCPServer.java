@@ -1,66 +1,286 @@
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ServerSocketFactory;
 
 public class ThreadPoolTCPServer {
 
     private static final int DEFAULT_PORT = 8080;
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+    private static final String BUSY_LINE = "Server busy, please try again later.";
+    private static final String SHUTDOWN_LINE = "Server shutting down, please reconnect later.";
+
+    /** What to do with a client when every worker is busy. */
+    public enum AdmissionPolicy {
+        /** No waiting: once maxSize workers are busy, answer "server busy" and close. */
+        REJECT,
+        /**
+         * Queue up to the queue capacity (then "server busy"); a queued client
+         * not picked up before the deadline is turned away as well.
+         */
+        QUEUE_WITH_DEADLINE
+    }
 
     private final int port;
-    private final ExecutorService threadPool;
+    private final ThreadPoolExecutor threadPool;
+    private final AdmissionPolicy policy;
+    private final long queueDeadlineMs;
     private static final AtomicInteger clientCounter = new AtomicInteger(0);
+    private final GracefulShutdown drain = new GracefulShutdown("ThreadPoolTCPServer");
+    private final AtomicBoolean stopping = new AtomicBoolean();
+    private final AcceptLimiter limiter = AcceptLimiter.fromSystemProperties();
 
-    public ThreadPoolTCPServer(int port) {
+    // Live metrics (active / queued come from the executor itself)
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    public ThreadPoolTCPServer(int port, int coreSize, int maxSize, int queueCapacity,
+                               long keepAliveSec, AdmissionPolicy policy, long queueDeadlineMs) {
         this.port = port;
-        // Fixed-size pool: maximum 10 concurrent client handlers
-        this.threadPool = Executors.newFixedThreadPool(10);
+        this.policy = policy;
+        this.queueDeadlineMs = queueDeadlineMs;
+
+        // Bounded pool: core threads, grows to maxSize when the queue is full,
+        // extra threads die after keepAliveSec idle. No more unbounded queue.
+        // REJECT: no queue at all (hand-off), a client beyond maxSize is refused
+        // at once instead of waiting silently behind long-lived sessions.
+        // QUEUE_WITH_DEADLINE: the executor only grows past core once the queue
+        // is full, so a newcomer would get a fresh thread ahead of the clients
+        // already queued. All maxSize threads are core threads instead (the
+        // queue is used only when they are all busy, first come first served),
+        // and they still die after keepAliveSec idle.
+        BlockingQueue<Runnable> queue = (policy == AdmissionPolicy.REJECT)
+                ? new SynchronousQueue<>()
+                : new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        boolean fifo = policy == AdmissionPolicy.QUEUE_WITH_DEADLINE;
+        AtomicInteger workerId = new AtomicInteger();
+        this.threadPool = new ThreadPoolExecutor(
+                fifo ? maxSize : coreSize, maxSize, Math.max(1, keepAliveSec), TimeUnit.SECONDS,
+                queue,
+                r -> {
+                    Thread t = new Thread(r, "PoolWorker-" + workerId.incrementAndGet());
+                    t.setDaemon(false);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        if (fifo) {
+            threadPool.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    public ThreadPoolTCPServer(int port) {
+        // Same capacity as the former fixed pool of 10, plus room for bursts
+        this(port, 10, 20, 0, 60, AdmissionPolicy.REJECT, 0);
     }
 
     public ThreadPoolTCPServer() {
         this(DEFAULT_PORT);
     }
 
-    public void launch() {
-        System.out.println(this);
+    /** Handler task that remembers when it was queued. */
+    private class ClientTask implements Runnable {
+        private final Socket socket;
+        private final int clientId;
+        private final AcceptLimiter.Permit permit;
+        private final long enqueuedNanos = System.nanoTime();
 
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
-            System.out.println("Thread Pool Server started on port " + port);
+        ClientTask(Socket socket, int clientId, AcceptLimiter.Permit permit) {
+            this.socket = socket;
+            this.clientId = clientId;
+            this.permit = permit;
+        }
 
-            while (true) {
-                Socket clientSocket = serverSocket.accept();
-                int clientId = clientCounter.incrementAndGet();
+        long waitedMs() {
+            return (System.nanoTime() - enqueuedNanos) / 1_000_000;
+        }
 
-                // Submit a task to the pool instead of creating a new thread
-                threadPool.execute(() -> {
-                    ConnectionThread handler =
-                            new ConnectionThread(clientSocket, clientId);
-                    handler.run(); // run() is executed by a pooled thread
-                });
+        @Override
+        public void run() {
+            long waitedMs = waitedMs();
+            // filet de sécurité entre deux passages de l'expireQueued()
+            if (policy == AdmissionPolicy.QUEUE_WITH_DEADLINE && waitedMs > queueDeadlineMs) {
+                expire(this, waitedMs);
+                return;
+            }
+            ConnectionThread handler = new ConnectionThread(socket, clientId, drain, permit);
+            handler.run(); // run() is executed by a pooled thread
+        }
+    }
 
-                printThreadStats();
+    public void launch() {
+        LOG.info(this.toString());
+
+        // N threads d'accept (-Daccept.threads), SO_REUSEPORT en option
+        MultiAcceptor acceptor = MultiAcceptor.fromSystemProperties(
+                "ThreadPoolTCPServer", port, ServerSocketFactory.getDefault());
+        try {
+            acceptor.bind();
+            LOG.info("Thread Pool Server started on port %d (%s)", port, poolConfig());
+            startStatsReporter(5_000);
+            if (policy == AdmissionPolicy.QUEUE_WITH_DEADLINE) {
+                startQueueSweeper(Math.max(50, Math.min(1_000, queueDeadlineMs / 4)));
             }
+            MetricsSampler metrics = MetricsSampler.getDefault();
+            metrics.register("pool", this::getStats);
+            metrics.register("limiter", limiter::getStats);
+            metrics.start(port + 1000);
+            drain.addListener(acceptor);
+            drain.installShutdownHook(this::shutdown);
+
+            acceptor.run(this::onAccept);
         } catch (IOException e) {
-            System.err.println("Server error: " + e.getMessage());
-            e.printStackTrace();
+            if (!threadPool.isShutdown()) {
+                System.err.println("Server error: " + e.getMessage());
+                e.printStackTrace();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } finally {
+            acceptor.close();
             shutdown();
         }
     }
 
-    private void printThreadStats() {
-        Runtime runtime = Runtime.getRuntime();
-        System.out.println("=== Thread Statistics ===");
-        System.out.println(" Active threads : " + (Thread.activeCount() - 1));
-        System.out.println(" Memory usage : " +
-                (runtime.totalMemory() - runtime.freeMemory()) / 1024 + " KB");
+    /** Acceptor thread: admission, then hand the socket to the pool. */
+    private void onAccept(Socket clientSocket) {
+        // Cap global + limite par IP, avant la file du pool
+        AcceptLimiter.Permit permit = limiter.admitOrClose(clientSocket);
+        if (permit == null) {
+            return;
+        }
+        int clientId = clientCounter.incrementAndGet();
+
+        // Submit a task to the pool instead of creating a new thread
+        try {
+            threadPool.execute(new ClientTask(clientSocket, clientId, permit));
+        } catch (RejectedExecutionException e) {
+            permit.release();
+            if (threadPool.isShutdown()) {
+                turnAway(clientSocket, clientId, "shutting down", SHUTDOWN_LINE);
+            } else {
+                rejected.incrementAndGet();
+                turnAway(clientSocket, clientId, "pool and queue full", BUSY_LINE);
+            }
+        }
+    }
+
+    private void expire(ClientTask task, long waitedMs) {
+        expired.incrementAndGet();
+        task.permit.release();
+        turnAway(task.socket, task.clientId, "waited " + waitedMs + " ms in queue", BUSY_LINE);
     }
 
+    /**
+     * Turn away the queued clients already past the deadline, without waiting
+     * for a worker to dequeue them (with long-lived sessions, that may be never).
+     */
+    private void expireQueued() {
+        for (Runnable r : threadPool.getQueue()) {
+            ClientTask task = (ClientTask) r;
+            long waitedMs = task.waitedMs();
+            // remove() échoue si un worker vient de la prendre : c'est alors lui qui la traite
+            if (waitedMs > queueDeadlineMs && threadPool.remove(task)) {
+                expire(task, waitedMs);
+            }
+        }
+    }
+
+    /** Send one line to the client (instead of a welcome message) and close. */
+    private void turnAway(Socket socket, int clientId, String reason, String line) {
+        try (Socket s = socket) {
+            s.setSoTimeout(1000);
+            OutputStream out = s.getOutputStream();
+            out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException ignored) {
+            // le client est peut-être déjà parti
+        }
+        LOG.warn("Client %d turned away (%s) | %s", clientId, reason, getStats());
+    }
+
+    /** Live pool metrics (replaces printThreadStats()). */
+    public String getStats() {
+        return String.format("active=%d, queued=%d, poolSize=%d/%d, largest=%d, completed=%d, rejected=%d, expired=%d",
+                threadPool.getActiveCount(), threadPool.getQueue().size(),
+                threadPool.getPoolSize(), threadPool.getMaximumPoolSize(),
+                threadPool.getLargestPoolSize(), threadPool.getCompletedTaskCount(),
+                rejected.get(), expired.get());
+    }
+
+    private String poolConfig() {
+        return String.format("core=%d, max=%d, queue=%d, keepAlive=%ds, policy=%s%s",
+                threadPool.getCorePoolSize(), threadPool.getMaximumPoolSize(),
+                threadPool.getQueue().remainingCapacity() + threadPool.getQueue().size(),
+                threadPool.getKeepAliveTime(TimeUnit.SECONDS), policy,
+                policy == AdmissionPolicy.QUEUE_WITH_DEADLINE ? " (" + queueDeadlineMs + " ms)" : "");
+    }
+
+    /** Periodic metrics line, off the accept path. */
+    private void startStatsReporter(long periodMs) {
+        Thread t = new Thread(() -> {
+            String last = null;
+            while (true) {
+                try { Thread.sleep(periodMs); } catch (InterruptedException e) { return; }
+                String stats = getStats();
+                if (!stats.equals(last)) { // pas de bruit quand rien ne change
+                    LOG.info("Pool stats: %s", stats);
+                    last = stats;
+                }
+            }
+        }, "PoolStats");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Periodic expireQueued() for QUEUE_WITH_DEADLINE. */
+    private void startQueueSweeper(long periodMs) {
+        Thread t = new Thread(() -> {
+            while (!threadPool.isShutdown()) {
+                try { Thread.sleep(periodMs); } catch (InterruptedException e) { return; }
+                expireQueued();
+            }
+        }, "QueueSweeper");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Graceful shutdown: no new tasks, queued clients (never served) are told
+     * right away, connected ones are drained, then the pool is stopped.
+     */
     public void shutdown() {
+        if (!stopping.compareAndSet(false, true)) return; // hook + finally de launch()
         threadPool.shutdown();
         System.out.println("Server shutdown initiated");
+
+        List<Runnable> queued = new ArrayList<>();
+        threadPool.getQueue().drainTo(queued);
+        for (Runnable r : queued) {
+            ClientTask task = (ClientTask) r;
+            task.permit.release();
+            turnAway(task.socket, task.clientId, "shutting down while queued", SHUTDOWN_LINE);
+        }
+
+        drain.shutdown(); // ferme la socket serveur puis attend les clients connectés
+        try {
+            if (!threadPool.awaitTermination(1, TimeUnit.SECONDS)) {
+                threadPool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
@@ -69,8 +289,18 @@ public class ThreadPoolTCPServer {
     }
 
     public static void main(String[] args) {
+        // java ThreadPoolTCPServer [port] [core] [max] [queue] [reject|queue] [deadlineMs]
+        // (la taille de file ne sert qu'avec "queue" : reject n'a pas de file)
+        // (avec "queue", core = max : la file ne sert que quand les max workers sont occupés)
         int port = (args.length >= 1) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
-        ThreadPoolTCPServer server = new ThreadPoolTCPServer(port);
+        int core = (args.length >= 2) ? Integer.parseInt(args[1]) : 10;
+        int max = (args.length >= 3) ? Integer.parseInt(args[2]) : 20;
+        int queue = (args.length >= 4) ? Integer.parseInt(args[3]) : 50;
+        AdmissionPolicy policy = (args.length >= 5 && "queue".equalsIgnoreCase(args[4]))
+                ? AdmissionPolicy.QUEUE_WITH_DEADLINE : AdmissionPolicy.REJECT;
+        long deadlineMs = (args.length >= 6) ? Long.parseLong(args[5]) : 10_000;
+
+        ThreadPoolTCPServer server = new ThreadPoolTCPServer(port, core, max, queue, 60, policy, deadlineMs);
         server.launch();
     }
 }
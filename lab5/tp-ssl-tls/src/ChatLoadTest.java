@@ -0,0 +1,317 @@
+import javax.net.ssl.*;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator for SecureChatServer: thousands of simulated users.
+ *
+ * Each user connects (TCP + TLS handshake), logs in, joins one of the rooms,
+ * then sends bursts of messages at a fixed rate following a mix of room
+ * messages, private messages and user list requests, and answers PINGs.
+ * Each delivery gives an end-to-end latency from the message timestamp (the
+ * sender's Instant.now(), kept by the server), split into hops with the
+ * server's ingress / egress stamps: client -> server, inside the server,
+ * server -> client. Wall clock times: the server must run on the same host
+ * (or with synchronized clocks).
+ *
+ * Threads: one blocking reader per user (small stack) and a shared scheduled
+ * pool for the sends; users are connected by a pool of connectors to spread
+ * the handshakes.
+ *
+ * Reported: connect / login times, messages sent and delivered per second,
+ * delivery latency percentiles (room, private, per hop), errors by kind.
+ *
+ * The server's own limits must let the load through, e.g.:
+ *   java -Dlimit.perIpRate=100000 -Dlimit.perIpBurst=100000 -Dlimit.perIpMax=100000
+ *        -Dchat.sessionRate=1000 -Dchat.sessionBurst=1000 -Dchat.roomRate=100000
+ *        -Dchat.roomBurst=100000 SecureChatServer
+ *
+ * Usage: java ChatLoadTest [host] [port] [users] [rooms] [seconds] [msgsPerSecPerUser]
+ *                          [mix text,private,list] [burst] [contentBytes]
+ * Example: java ChatLoadTest localhost 8444 2000 20 30 1 80,15,5 3 200
+ */
+public class ChatLoadTest {
+
+    private static final long READER_STACK = 256 * 1024;
+
+    private final String host;
+    private final int port;
+    private final int users;
+    private final int rooms;
+    private final double ratePerUser;
+    private final int[] mix; // cumulé : text, text+private, total
+    private final int burst;
+    private final String padding;
+
+    private final SSLSocketFactory factory;
+    private final List<User> loggedIn = new CopyOnWriteArrayList<>();
+    private volatile boolean sending = true;
+
+    private final LatencyHistogram connectTime = new LatencyHistogram("connect+handshake");
+    private final LatencyHistogram loginTime = new LatencyHistogram("login");
+    private final LatencyHistogram roomLatency = new LatencyHistogram("room delivery");
+    private final LatencyHistogram privateLatency = new LatencyHistogram("private delivery");
+    private final LatencyHistogram upstream = new LatencyHistogram("  client -> server");
+    private final LatencyHistogram inServer = new LatencyHistogram("  in server");
+    private final LatencyHistogram downstream = new LatencyHistogram("  server -> client");
+
+    private final AtomicLong sentText = new AtomicLong();
+    private final AtomicLong sentPrivate = new AtomicLong();
+    private final AtomicLong sentList = new AtomicLong();
+    private final AtomicLong receivedRoom = new AtomicLong();
+    private final AtomicLong receivedPrivate = new AtomicLong();
+    private final AtomicLong receivedOther = new AtomicLong();
+    private final AtomicLong connectErrors = new AtomicLong();
+    private final AtomicLong loginErrors = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong(); // ERROR_RESPONSE (limites de débit...)
+    private final AtomicLong ioErrors = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+
+    /** One simulated user: its socket, and the reader thread started after login. */
+    private final class User {
+        final String name;
+        final String room;
+        SSLSocket socket;
+        DataOutputStream out;
+        DataInputStream in;
+        volatile boolean closing;
+
+        User(int index) {
+            this.name = "user" + index;
+            this.room = "room" + (index % rooms);
+        }
+
+        // Le lecteur répond aux PING pendant que l'ordonnanceur envoie
+        synchronized void send(ChatMessage msg) throws IOException {
+            out.write(msg.toBytes());
+            out.flush();
+        }
+
+        void close() {
+            closing = true;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public ChatLoadTest(String host, int port, int users, int rooms, double ratePerUser,
+                        int[] mix, int burst, int contentBytes) throws Exception {
+        this.host = host;
+        this.port = port;
+        this.users = users;
+        this.rooms = Math.max(1, rooms);
+        this.ratePerUser = ratePerUser;
+        this.mix = new int[]{mix[0], mix[0] + mix[1], mix[0] + mix[1] + mix[2]};
+        this.burst = Math.max(1, burst);
+        this.padding = "x".repeat(Math.max(1, contentBytes));
+        this.factory = trustAll().getSocketFactory();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = (args.length >= 1) ? args[0] : "localhost";
+        int port = (args.length >= 2) ? Integer.parseInt(args[1]) : 8444;
+        int users = (args.length >= 3) ? Integer.parseInt(args[2]) : 500;
+        int rooms = (args.length >= 4) ? Integer.parseInt(args[3]) : 10;
+        int seconds = (args.length >= 5) ? Integer.parseInt(args[4]) : 20;
+        double rate = (args.length >= 6) ? Double.parseDouble(args[5]) : 1.0;
+        String[] m = ((args.length >= 7) ? args[6] : "80,15,5").split(",");
+        int[] mix = {Integer.parseInt(m[0].trim()), Integer.parseInt(m[1].trim()), Integer.parseInt(m[2].trim())};
+        int burst = (args.length >= 8) ? Integer.parseInt(args[7]) : 1;
+        int size = (args.length >= 9) ? Integer.parseInt(args[8]) : 100;
+
+        new ChatLoadTest(host, port, users, rooms, rate, mix, burst, size).run(seconds);
+    }
+
+    public void run(int seconds) throws InterruptedException {
+        System.out.printf("ChatLoadTest: %d users, %d rooms, %.2f msg/s per user (bursts of %d), mix %d/%d/%d, %d s%n",
+                users, rooms, ratePerUser, burst, mix[0], mix[1] - mix[0], mix[2] - mix[1], seconds);
+
+        // 1) Connexions + login, étalés sur un pool de connecteurs
+        long rampStart = System.nanoTime();
+        ExecutorService connectors = Executors.newFixedThreadPool(Math.min(users, 32));
+        for (int i = 0; i < users; i++) {
+            int index = i;
+            connectors.execute(() -> connect(new User(index)));
+        }
+        connectors.shutdown();
+        connectors.awaitTermination(10, TimeUnit.MINUTES);
+        double ramp = (System.nanoTime() - rampStart) / 1e9;
+        System.out.printf("Ramp-up: %d/%d users logged in in %.2f s (%.0f logins/s)%n",
+                loggedIn.size(), users, ramp, loggedIn.size() / ramp);
+
+        // 2) Charge : chaque utilisateur envoie une rafale toutes les burst/rate secondes
+        ScheduledExecutorService senders = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors() * 2));
+        long periodNanos = (long) (burst * 1e9 / Math.max(0.001, ratePerUser));
+        for (User u : loggedIn) {
+            long initial = ThreadLocalRandom.current().nextLong(periodNanos); // départs étalés
+            senders.scheduleAtFixedRate(() -> sendBurst(u), initial, periodNanos, TimeUnit.NANOSECONDS);
+        }
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        sending = false;
+        senders.shutdownNow();
+        long sendElapsed = System.nanoTime() - start;
+
+        // 3) Derniers messages en vol, puis fermeture
+        Thread.sleep(2000);
+        for (User u : loggedIn) {
+            u.close();
+        }
+        report(sendElapsed);
+    }
+
+    private void connect(User u) {
+        long t0 = System.nanoTime();
+        try {
+            u.socket = (SSLSocket) factory.createSocket(host, port);
+            u.socket.setTcpNoDelay(true);
+            u.socket.startHandshake();
+            connectTime.record(System.nanoTime() - t0);
+            u.out = new DataOutputStream(u.socket.getOutputStream());
+            u.in = new DataInputStream(u.socket.getInputStream());
+        } catch (IOException e) {
+            connectErrors.incrementAndGet();
+            if (u.socket != null) u.close();
+            return;
+        }
+        try {
+            long t1 = System.nanoTime();
+            u.send(new ChatMessage(MessageType.LOGIN_REQUEST, "1.0", Instant.now(), u.name, null, null,
+                    FrameCompression.isEnabled() ? FrameCompression.LOGIN_OFFER : null));
+            ChatMessage resp = ChatMessage.fromBytes(FrameCompression.readFrame(u.in, 128 * 1024));
+            if (resp.getType() != MessageType.LOGIN_RESPONSE) {
+                loginErrors.incrementAndGet();
+                u.close();
+                return;
+            }
+            loginTime.record(System.nanoTime() - t1);
+            u.send(new ChatMessage(MessageType.JOIN_ROOM_REQUEST, "1.0", Instant.now(), u.name, null, u.room, null));
+        } catch (IOException e) {
+            loginErrors.incrementAndGet();
+            u.close();
+            return;
+        }
+        Thread reader = new Thread(null, () -> readLoop(u), "reader-" + u.name, READER_STACK);
+        reader.setDaemon(true);
+        reader.start();
+        loggedIn.add(u);
+    }
+
+    private void sendBurst(User u) {
+        if (!sending || u.closing) return;
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        try {
+            for (int i = 0; i < burst; i++) {
+                int pick = rnd.nextInt(mix[2]);
+                String content = padding;
+                if (pick < mix[0]) {
+                    u.send(new ChatMessage(MessageType.TEXT_MESSAGE, "1.0", Instant.now(), u.name, null, u.room, content));
+                    sentText.incrementAndGet();
+                } else if (pick < mix[1]) {
+                    User to = loggedIn.get(rnd.nextInt(loggedIn.size()));
+                    u.send(new ChatMessage(MessageType.PRIVATE_MESSAGE, "1.0", Instant.now(), u.name, to.name, null, content));
+                    sentPrivate.incrementAndGet();
+                } else {
+                    u.send(new ChatMessage(MessageType.USER_LIST_REQUEST, "1.0", Instant.now(), u.name, null, null, null));
+                    sentList.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            if (!u.closing) ioErrors.incrementAndGet();
+            u.close();
+        }
+    }
+
+    private void readLoop(User u) {
+        try {
+            while (true) {
+                ChatMessage msg = ChatMessage.fromBytes(FrameCompression.readFrame(u.in, 128 * 1024));
+                long now = ChatMessage.nowEpochNanos();
+                boolean fromUser = !"server".equals(msg.getSender()) && msg.getTimestamp() != null;
+                switch (msg.getType()) {
+                    case TEXT_MESSAGE:
+                        if (fromUser) {
+                            recordDelivery(roomLatency, msg, now);
+                            receivedRoom.incrementAndGet();
+                        } else {
+                            receivedOther.incrementAndGet(); // "x joined the room." etc.
+                        }
+                        break;
+                    case PRIVATE_MESSAGE:
+                        if (fromUser) recordDelivery(privateLatency, msg, now);
+                        receivedPrivate.incrementAndGet();
+                        break;
+                    case PING:
+                        u.send(new ChatMessage(MessageType.PONG, "1.0", Instant.now(), u.name, null, null, null));
+                        break;
+                    case ERROR_RESPONSE:
+                        serverErrors.incrementAndGet();
+                        break;
+                    default:
+                        receivedOther.incrementAndGet();
+                }
+            }
+        } catch (EOFException e) {
+            if (!u.closing) disconnects.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            if (!u.closing) ioErrors.incrementAndGet();
+        } finally {
+            u.close();
+        }
+    }
+
+    /** End-to-end latency, and per hop when the server stamped the message. */
+    private void recordDelivery(LatencyHistogram total, ChatMessage msg, long nowNanos) {
+        long sent = ChatMessage.epochNanos(msg.getTimestamp());
+        total.record(nowNanos - sent);
+        long in = msg.getIngressNanos();
+        long out = msg.getEgressNanos();
+        if (in != 0) upstream.record(in - sent);
+        if (in != 0 && out != 0) inServer.record(out - in);
+        if (out != 0) downstream.record(nowNanos - out);
+    }
+
+    private void report(long sendElapsedNanos) {
+        double s = sendElapsedNanos / 1e9;
+        long sent = sentText.get() + sentPrivate.get() + sentList.get();
+        long delivered = receivedRoom.get() + receivedPrivate.get();
+        System.out.printf(Locale.ROOT, "Sent: %d in %.1f s (%.0f msg/s): %d room, %d private, %d user list%n",
+                sent, s, sent / s, sentText.get(), sentPrivate.get(), sentList.get());
+        System.out.printf(Locale.ROOT, "Delivered: %d (%.0f msg/s): %d room, %d private, %d other%n",
+                delivered, delivered / s, receivedRoom.get(), receivedPrivate.get(), receivedOther.get());
+        System.out.println("  " + connectTime.summary());
+        System.out.println("  " + loginTime.summary());
+        System.out.println("  " + roomLatency.summary());
+        System.out.println("  " + privateLatency.summary());
+        System.out.println("  " + upstream.summary());
+        System.out.println("  " + inServer.summary());
+        System.out.println("  " + downstream.summary());
+        System.out.printf("Errors: connect=%d, login=%d, server ERROR_RESPONSE=%d, I/O=%d, disconnected by server=%d%n",
+                connectErrors.get(), loginErrors.get(), serverErrors.get(), ioErrors.get(), disconnects.get());
+    }
+
+    private static SSLContext trustAll() throws Exception {
+        TrustManager[] trustAll = new TrustManager[]{
+                new X509TrustManager() {
+                    public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[0]; }
+                    public void checkClientTrusted(X509Certificate[] chain, String authType) {}
+                    public void checkServerTrusted(X509Certificate[] chain, String authType) {}
+                }
+        };
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        ctx.init(null, trustAll, new SecureRandom());
+        return ctx;
+    }
+}
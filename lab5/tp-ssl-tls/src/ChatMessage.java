@@ -16,6 +16,11 @@ public class ChatMessage {
     private String room;
     private String content;
 
+    // Horodatages serveur (ns depuis l'epoch, 0 = absent) : arrivée du message
+    // d'origine, puis envoi de celui-ci. Le timestamp reste l'heure d'envoi du client.
+    private long ingressNanos;
+    private long egressNanos;
+
     public ChatMessage(MessageType type,
                        String version,
                        Instant timestamp,
@@ -39,6 +44,20 @@ public class ChatMessage {
     public String getRecipient() { return recipient; }
     public String getRoom() { return room; }
     public String getContent() { return content; }
+    public long getIngressNanos() { return ingressNanos; }
+    public long getEgressNanos() { return egressNanos; }
+
+    public void setIngressNanos(long ingressNanos) { this.ingressNanos = ingressNanos; }
+    public void setEgressNanos(long egressNanos) { this.egressNanos = egressNanos; }
+
+    /** Nanoseconds since the epoch (the resolution of Instant.now(), microseconds on most systems). */
+    public static long epochNanos(Instant t) {
+        return t.getEpochSecond() * 1_000_000_000L + t.getNano();
+    }
+
+    public static long nowEpochNanos() {
+        return epochNanos(Instant.now());
+    }
 
     @Override
     public String toString() {
@@ -50,6 +69,8 @@ public class ChatMessage {
                 ", recipient='" + recipient + '\'' +
                 ", room='" + room + '\'' +
                 ", content='" + content + '\'' +
+                (ingressNanos != 0 ? ", ingressNanos=" + ingressNanos : "") +
+                (egressNanos != 0 ? ", egressNanos=" + egressNanos : "") +
                 '}';
     }
 
@@ -104,8 +125,21 @@ public class ChatMessage {
         appendJsonField(sb, "recipient", recipient, true);
         appendJsonField(sb, "room", room, true);
         appendJsonField(sb, "content", content, true);
-        sb.append("\"timestamp\":")
-          .append(timestamp != null ? timestamp.getEpochSecond() : "null");
+        // Secondes + fraction : un ancien lecteur s'arrête au '.' et garde les secondes
+        sb.append("\"timestamp\":");
+        if (timestamp == null) {
+            sb.append("null");
+        } else {
+            sb.append(timestamp.getEpochSecond());
+            if (timestamp.getNano() != 0) {
+                String frac = Integer.toString(timestamp.getNano());
+                sb.append('.');
+                for (int i = frac.length(); i < 9; i++) sb.append('0');
+                sb.append(frac);
+            }
+        }
+        if (ingressNanos != 0) sb.append(",\"ingressNanos\":").append(ingressNanos);
+        if (egressNanos != 0) sb.append(",\"egressNanos\":").append(egressNanos);
         sb.append('}');
         return sb.toString();
     }
@@ -137,12 +171,39 @@ public class ChatMessage {
         String recipient = extractStringField(json, "recipient");
         String room      = extractStringField(json, "room");
         String content   = extractStringField(json, "content");
-        Long ts          = extractLongField(json, "timestamp");
+        Instant timestamp = extractTimestamp(json);
+        Long ingress     = extractLongField(json, "ingressNanos");
+        Long egress      = extractLongField(json, "egressNanos");
 
         MessageType type = MessageType.valueOf(typeStr);
-        Instant timestamp = (ts != null ? Instant.ofEpochSecond(ts) : null);
 
-        return new ChatMessage(type, version, timestamp, sender, recipient, room, content);
+        ChatMessage msg = new ChatMessage(type, version, timestamp, sender, recipient, room, content);
+        if (ingress != null) msg.ingressNanos = ingress;
+        if (egress != null) msg.egressNanos = egress;
+        return msg;
+    }
+
+    /** "timestamp": epoch seconds, with an optional fraction (up to 9 digits). */
+    private static Instant extractTimestamp(String json) {
+        Long seconds = extractLongField(json, "timestamp");
+        if (seconds == null) return null;
+        int idx = json.indexOf("\"timestamp\"");
+        int i = json.indexOf(':', idx) + 1;
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) i++;
+        while (i < json.length() && (Character.isDigit(json.charAt(i)) || json.charAt(i) == '-')) i++;
+        if (i >= json.length() || json.charAt(i) != '.') {
+            return Instant.ofEpochSecond(seconds);
+        }
+        int nanos = 0;
+        int digits = 0;
+        for (i++; i < json.length() && Character.isDigit(json.charAt(i)); i++) {
+            if (digits < 9) {
+                nanos = nanos * 10 + (json.charAt(i) - '0');
+                digits++;
+            }
+        }
+        for (; digits < 9; digits++) nanos *= 10;
+        return Instant.ofEpochSecond(seconds, nanos);
     }
 
     private static String extractStringField(String json, String field) {
@@ -1,16 +1,28 @@
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class ChatRoom {
 
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+
     private final String name;
     private final Set<ClientSession> members =
             Collections.synchronizedSet(new HashSet<>());
 
-    public ChatRoom(String name) {
+    // Débit max de broadcasts pour la room, tous membres confondus
+    private final TokenBucket broadcastBucket;
+
+    // Trames compressées une fois par broadcast, pour les membres qui l'ont négocié
+    private final FrameCompression compression;
+
+    public ChatRoom(String name, TokenBucket broadcastBucket) {
         this.name = name;
+        this.broadcastBucket = broadcastBucket;
+        this.compression = FrameCompression.fromSystemProperties("room " + name);
     }
 
     public String getName() {
@@ -29,14 +41,69 @@ public class ChatRoom {
         }
     }
 
+    public int size() {
+        return members.size();
+    }
+
+    public String getCompressionStats() {
+        return compression.getStats();
+    }
+
+    /** One broadcast worth of room budget, lock-free. */
+    public boolean tryAcquireBroadcast() {
+        return broadcastBucket.tryAcquire();
+    }
+
+    /**
+     * Send to every member. The message is serialized once, and compressed
+     * at most once, for the whole room. Frames are only queued (see
+     * ClientSession), so a member that stopped reading cannot stall the
+     * broadcast. Members whose send fails (closed, or outbox full) are
+     * evicted at once: removed from the room and closed.
+     */
     public void broadcast(ChatMessage message) {
+        ClientSession[] snapshot;
         synchronized (members) {
-            for (ClientSession s : members) {
-                try {
-                    s.send(message);
-                } catch (IOException e) {
-                    System.err.println("Failed to send to " + s.getUsername() + ": " + e.getMessage());
+            // pas d'écriture réseau sous le verrou de la room
+            snapshot = members.toArray(new ClientSession[0]);
+        }
+
+        long start = System.nanoTime();
+        byte[] plain;
+        try {
+            message.setEgressNanos(ChatMessage.nowEpochNanos()); // une fois pour toute la room
+            plain = message.toBytes();
+        } catch (IOException e) {
+            LOG.warn("Cannot encode broadcast for %s: %s", name, e.getMessage());
+            return;
+        }
+        byte[] packed = null; // compressé au premier membre qui l'accepte
+
+        List<ClientSession> dead = null;
+        for (ClientSession s : snapshot) {
+            if (s.isClosed()) {
+                if (dead == null) dead = new ArrayList<>();
+                dead.add(s);
+                continue;
+            }
+            try {
+                if (s.acceptsCompression()) {
+                    if (packed == null) packed = compression.encode(plain);
+                    s.sendFrame(packed, start);
+                } else {
+                    s.sendFrame(plain, start);
                 }
+            } catch (IOException e) {
+                LOG.warn("Failed to send to %s: %s (evicted from %s)", s.getUsername(), e.getMessage(), name);
+                if (dead == null) dead = new ArrayList<>();
+                dead.add(s);
+            }
+        }
+
+        if (dead != null) {
+            for (ClientSession s : dead) {
+                leave(s);
+                s.close();
             }
         }
     }
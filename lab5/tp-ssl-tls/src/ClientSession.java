@@ -1,18 +1,77 @@
 import javax.net.ssl.SSLSocket;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * One logged-in client. Every frame to it goes through a bounded outbox
+ * drained by its own writer thread: broadcasts, private messages and pings
+ * never block on a peer that stopped reading. When the outbox is full the
+ * send fails (the caller evicts the session) instead of stalling the room.
+ * Sockets are closed on a separate thread too, since closing an SSLSocket
+ * may block (close_notify behind a stuck write).
+ *
+ * Configuration: -Dchat.sendQueue (frames per session, default 256).
+ */
 public class ClientSession {
 
+    private static final LatencyTracker LATENCY = LatencyTracker.getDefault();
+    private static final int SEND_QUEUE = Integer.getInteger("chat.sendQueue", 256);
+
+    private static final ExecutorService CLOSER = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "SessionCloser");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Frame waiting in the outbox. */
+    private static final class Frame {
+        final byte[] data;
+        final long queuedAtNanos;
+
+        Frame(byte[] data, long queuedAtNanos) {
+            this.data = data;
+            this.queuedAtNanos = queuedAtNanos;
+        }
+    }
+
     private final String username;
     private final SSLSocket socket;
     private final DataOutputStream out;
-    private String currentRoom;
+    private volatile String currentRoom;
+
+    // Broadcasts, messages privés et heartbeats arrivent de threads différents :
+    // ils passent tous par la file, un seul thread écrit sur la socket
+    private final ArrayBlockingQueue<Frame> outbox = new ArrayBlockingQueue<>(SEND_QUEUE);
+    private final AtomicInteger pending = new AtomicInteger(); // en file ou en cours d'écriture
+    private final Thread writer;
 
-    public ClientSession(String username, SSLSocket socket, DataOutputStream out) {
+    // Dernier message reçu du client (heartbeat)
+    private volatile long lastSeenNanos = System.nanoTime();
+    private volatile boolean closed;
+
+    // Compression des trames sortantes, si négociée au login (null sinon)
+    private volatile FrameCompression compression;
+
+    // Limitation de débit des messages entrants (thread du handler uniquement)
+    private final TokenBucket messageBucket;
+    private long droppedSinceNotice;
+    private long consecutiveDropped;
+    private long lastNoticeNanos;
+
+    public ClientSession(String username, SSLSocket socket, DataOutputStream out,
+                         TokenBucket messageBucket) {
         this.username = username;
         this.socket = socket;
         this.out = out;
+        this.messageBucket = messageBucket;
+        this.writer = new Thread(this::writeLoop, "SessionWriter-" + username);
+        this.writer.setDaemon(true);
+        this.writer.start();
     }
 
     public String getUsername() {
@@ -31,9 +90,159 @@ public class ClientSession {
         this.currentRoom = currentRoom;
     }
 
+    /** Frames to this client may be compressed (offered at login); c encodes the direct messages. */
+    public void enableCompression(FrameCompression c) {
+        this.compression = c;
+    }
+
+    public boolean acceptsCompression() {
+        return compression != null;
+    }
+
     public void send(ChatMessage message) throws IOException {
+        sendFrame(encode(message));
+    }
+
+    /** Queue an already encoded frame (broadcasts: encoded once for the whole room). */
+    public void sendFrame(byte[] data) throws IOException {
+        sendFrame(data, System.nanoTime());
+    }
+
+    /**
+     * Same, handed over at queuedAtNanos (System.nanoTime()): the time spent
+     * in the outbox and the write itself are recorded by the LatencyTracker.
+     * Never blocks; fails if the session is closed or its outbox is full
+     * (peer not reading), the session being closed in the latter case.
+     */
+    public void sendFrame(byte[] data, long queuedAtNanos) throws IOException {
+        if (closed) {
+            throw new IOException("session closed");
+        }
+        pending.incrementAndGet();
+        if (!outbox.offer(new Frame(data, queuedAtNanos))) {
+            pending.decrementAndGet();
+            close();
+            throw new IOException("send queue full (" + SEND_QUEUE + " frames), peer not reading");
+        }
+    }
+
+    /**
+     * Queue only if there is room (heartbeat pings); false if the message was
+     * skipped. A full outbox is left to the caller's own eviction rules.
+     */
+    public boolean trySend(ChatMessage message) throws IOException {
+        if (closed || outbox.remainingCapacity() == 0) {
+            return false;
+        }
+        byte[] data = encode(message);
+        pending.incrementAndGet();
+        if (!outbox.offer(new Frame(data, System.nanoTime()))) {
+            pending.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /** Wait (at most timeoutMs) until every queued frame has been written. */
+    public boolean flush(long timeoutMs) {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        while (pending.get() > 0 && !closed) {
+            if (System.nanoTime() > deadline) return false;
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return pending.get() == 0;
+    }
+
+    private void writeLoop() {
+        try {
+            while (!closed) {
+                Frame f = outbox.take();
+                long start = System.nanoTime();
+                LATENCY.recordQueue(start - f.queuedAtNanos);
+                out.write(f.data);
+                out.flush();
+                LATENCY.recordWrite(System.nanoTime() - start);
+                pending.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            // close()
+        } catch (IOException e) {
+            close(); // peer parti : le handler le verra à sa prochaine lecture
+        }
+    }
+
+    private byte[] encode(ChatMessage message) throws IOException {
         byte[] data = message.toBytes();
-        out.write(data);
-        out.flush();
+        FrameCompression c = compression;
+        return (c != null) ? c.encode(data) : data;
+    }
+
+    /** Per-session rate limit; resets the flood counter when a message goes through. */
+    public boolean tryAcquireMessage() {
+        if (messageBucket.tryAcquire()) {
+            consecutiveDropped = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /** Record a dropped message; returns the number dropped in a row. */
+    public long recordDrop() {
+        droppedSinceNotice++;
+        return ++consecutiveDropped;
+    }
+
+    /**
+     * Throttling notice to send now, or null if one was sent less than
+     * minIntervalNanos ago (a flooder must not get one reply per message).
+     */
+    public String takeThrottleNotice(String reason, long minIntervalNanos) {
+        long now = System.nanoTime();
+        if (lastNoticeNanos != 0 && now - lastNoticeNanos < minIntervalNanos) {
+            return null;
+        }
+        lastNoticeNanos = now;
+        long n = droppedSinceNotice;
+        droppedSinceNotice = 0;
+        return "Rate limit exceeded (" + reason + "): " + n + " message(s) dropped";
+    }
+
+    /** Any message from the client proves it is alive. */
+    public void markAlive() {
+        lastSeenNanos = System.nanoTime();
+    }
+
+    public long getLastSeenNanos() {
+        return lastSeenNanos;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stop the writer and close the socket, without blocking the caller; the
+     * handler thread blocked in read() then cleans up. Queued frames are dropped.
+     */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        writer.interrupt();
+        outbox.clear();
+        closeAsync(socket);
+    }
+
+    /** Close s on the closer thread: SSLSocket.close() may block (close_notify). */
+    static void closeAsync(Socket s) {
+        CLOSER.execute(() -> {
+            try {
+                s.close();
+            } catch (IOException ignored) {}
+        });
     }
 }
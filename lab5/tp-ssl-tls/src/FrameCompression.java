@@ -0,0 +1,178 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional deflate compression of the server -> client frames.
+ *
+ * Frame on the wire: [4 bytes length][payload]. When bit 31 of the length is
+ * set, the payload is the JSON compressed with zlib and the preset DICTIONARY
+ * (the ChatMessage field names and usual values: even a few hundred bytes of
+ * JSON shrink). Only clients that offered it at login (LOGIN_REQUEST content
+ * = LOGIN_OFFER) receive such frames; the others get plain frames.
+ *
+ * A room compresses each broadcast once and sends the same bytes to every
+ * member that negotiated it; frames under the threshold, or that would not
+ * get smaller, go out as they are. Each instance counts its frames, the
+ * ratio and the CPU time spent in deflate.
+ *
+ * Configuration: -Dchat.compression=false (off, server and client),
+ * -Dchat.compressMin (JSON bytes, default 512).
+ */
+public class FrameCompression {
+
+    public static final int COMPRESSED_FLAG = 0x80000000;
+    public static final String LOGIN_OFFER = "compression=deflate-dict1";
+
+    // Dictionnaire partagé client/serveur : changer son contenu = changer LOGIN_OFFER.
+    // zlib préfère les chaînes proches de la fin : les plus fréquentes en dernier.
+    private static final byte[] DICTIONARY = (
+            "Rate limit exceeded (): message(s) dropped Active users: joined the room. Welcome !"
+            + "{\"type\":\"ERROR_RESPONSE\",\"version\":\"1.0\",\"sender\":\"server\",\"recipient\":"
+            + "{\"type\":\"USER_LIST_REQUEST\",\"version\":\"1.0\",\"sender\":\"server\",\"recipient\":\""
+            + "{\"type\":\"PRIVATE_MESSAGE\",\"version\":\"1.0\",\"sender\":\"\",\"recipient\":\"\",\"room\":null,"
+            + "\"content\":\"the and you that for with this is are http://https://www. .com "
+            + "{\"type\":\"TEXT_MESSAGE\",\"version\":\"1.0\",\"sender\":\"\",\"recipient\":null,\"room\":\"general\","
+            + "\"content\":\"\",\"timestamp\":1")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    // Un Deflater/Inflater par thread (handlers, heartbeat) : natifs, coûteux à créer
+    private static final ThreadLocal<Deflater> DEFLATER =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private final String name;
+    private final int threshold;
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong compressed = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();   // JSON des trames compressées
+    private final AtomicLong bytesOut = new AtomicLong();  // après deflate
+    private final AtomicLong cpuNanos = new AtomicLong();
+
+    public FrameCompression(String name, int threshold) {
+        this.name = name;
+        this.threshold = threshold;
+    }
+
+    public static FrameCompression fromSystemProperties(String name) {
+        return new FrameCompression(name, Integer.getInteger("chat.compressMin", 512));
+    }
+
+    public static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty("chat.compression"));
+    }
+
+    /**
+     * Compressed version of a plain [length][JSON] frame, or the frame itself
+     * when it is under the threshold or would not get smaller.
+     */
+    public byte[] encode(byte[] plainFrame) {
+        frames.incrementAndGet();
+        int len = plainFrame.length - 4;
+        if (len < threshold) {
+            return plainFrame;
+        }
+        long cpuStart = cpuTime();
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY); // à refaire après chaque reset()
+        deflater.setInput(plainFrame, 4, len);
+        deflater.finish();
+        byte[] out = new byte[4 + len]; // plus grand que l'original : inutile
+        int n = 0;
+        while (!deflater.finished() && 4 + n < out.length) {
+            n += deflater.deflate(out, 4 + n, out.length - 4 - n);
+        }
+        cpuNanos.addAndGet(cpuTime() - cpuStart);
+        if (!deflater.finished()) {
+            return plainFrame;
+        }
+        compressed.incrementAndGet();
+        bytesIn.addAndGet(len);
+        bytesOut.addAndGet(n);
+        int prefix = n | COMPRESSED_FLAG;
+        out[0] = (byte) (prefix >>> 24);
+        out[1] = (byte) (prefix >>> 16);
+        out[2] = (byte) (prefix >>> 8);
+        out[3] = (byte) prefix;
+        byte[] frame = new byte[4 + n];
+        System.arraycopy(out, 0, frame, 0, frame.length);
+        return frame;
+    }
+
+    /**
+     * Client side: read one frame and return it as the plain [length][JSON]
+     * that ChatMessage.fromBytes() expects, inflating it if flagged.
+     * maxLength bounds both the wire payload and the inflated JSON.
+     */
+    public static byte[] readFrame(DataInputStream in, int maxLength) throws IOException {
+        int prefix = in.readInt();
+        boolean deflated = (prefix & COMPRESSED_FLAG) != 0;
+        int len = prefix & ~COMPRESSED_FLAG;
+        if (len <= 0 || len > maxLength) {
+            throw new IOException("Invalid length: " + len);
+        }
+        byte[] payload = new byte[len];
+        in.readFully(payload);
+        byte[] json = deflated ? inflate(payload, maxLength) : payload;
+
+        byte[] data = new byte[4 + json.length];
+        data[0] = (byte) (json.length >>> 24);
+        data[1] = (byte) (json.length >>> 16);
+        data[2] = (byte) (json.length >>> 8);
+        data[3] = (byte) json.length;
+        System.arraycopy(json, 0, data, 4, json.length);
+        return data;
+    }
+
+    /** Inflate a compressed payload (at most maxLength bytes out). */
+    public static byte[] inflate(byte[] payload, int maxLength) throws IOException {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(payload);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length * 4);
+        byte[] buf = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY); // vérifie aussi l'id du dictionnaire
+                    } else if (inflater.needsInput()) {
+                        throw new IOException("Truncated compressed frame");
+                    }
+                }
+                out.write(buf, 0, n);
+                if (out.size() > maxLength) {
+                    throw new IOException("Inflated frame larger than " + maxLength + " bytes");
+                }
+            }
+        } catch (DataFormatException | IllegalArgumentException e) {
+            throw new IOException("Bad compressed frame: " + e.getMessage());
+        }
+        return out.toByteArray();
+    }
+
+    private static long cpuTime() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    public String getStats() {
+        long in = bytesIn.get();
+        long c = compressed.get();
+        return String.format("%s: %d frames, %d compressed, %d -> %d bytes (%.1f%%), deflate CPU %.2f ms (%.1f us/frame)",
+                name, frames.get(), c, in, bytesOut.get(), in > 0 ? 100.0 * bytesOut.get() / in : 100.0,
+                cpuNanos.get() / 1e6, c > 0 ? cpuNanos.get() / 1e3 / c : 0.0);
+    }
+}
@@ -0,0 +1,180 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinated draining shutdown for a server.
+ *
+ * 1. stop accepting (the registered listeners are closed);
+ * 2. every live connection gets its drain action, run in parallel: notify
+ *    the client and stop reading, what is already being written still goes out;
+ * 3. wait until the handlers are done, up to the drain timeout;
+ * 4. force-close whatever is left, and report drained vs killed.
+ *
+ * Handlers register when they start and call Ticket.done() when they end.
+ * shutdown() is idempotent and can be called from a shutdown hook.
+ *
+ * Configuration: -Dshutdown.drain (ms, default 5000).
+ */
+public class GracefulShutdown {
+
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+
+    /** Notify the peer / stop reading. Must not wait for the handler. */
+    @FunctionalInterface
+    public interface DrainAction {
+        void begin() throws IOException;
+    }
+
+    /** One live connection. */
+    public final class Ticket {
+        private final Closeable connection;
+        private final DrainAction onDrain;
+
+        private Ticket(Closeable connection, DrainAction onDrain) {
+            this.connection = connection;
+            this.onDrain = onDrain;
+        }
+
+        /** The handler has finished (normally or not). */
+        public void done() {
+            synchronized (GracefulShutdown.this) {
+                live.remove(this);
+                GracefulShutdown.this.notifyAll();
+            }
+        }
+    }
+
+    private final String name;
+    private final long drainTimeoutMs;
+    private final Set<Ticket> live = new LinkedHashSet<>();
+    private final List<Closeable> listeners = new ArrayList<>();
+    private boolean shuttingDown;
+    private int refused;
+
+    public GracefulShutdown(String name, long drainTimeoutMs) {
+        this.name = name;
+        this.drainTimeoutMs = drainTimeoutMs;
+    }
+
+    public GracefulShutdown(String name) {
+        this(name, Long.getLong("shutdown.drain", 5_000L));
+    }
+
+    /** Plain TCP: half-close the input, the handler sees EOF and finishes on its own. */
+    public static DrainAction stopReading(Socket socket) {
+        return socket::shutdownInput;
+    }
+
+    /** Something to close first to stop accepting (server socket, channel...). */
+    public synchronized void addListener(Closeable listener) {
+        listeners.add(listener);
+    }
+
+    /** Run shutdown() on SIGTERM / Ctrl-C. */
+    public void installShutdownHook() {
+        installShutdownHook(this::shutdown);
+    }
+
+    /** Same, with the server's own shutdown (which must end up calling shutdown()). */
+    public void installShutdownHook(Runnable serverShutdown) {
+        Runtime.getRuntime().addShutdownHook(new Thread(serverShutdown, name + "-shutdown"));
+    }
+
+    public synchronized boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
+    /**
+     * Track a connection; null if the server is already shutting down
+     * (the caller then closes it right away).
+     */
+    public synchronized Ticket register(Closeable connection, DrainAction onDrain) {
+        if (shuttingDown) {
+            refused++;
+            return null;
+        }
+        Ticket t = new Ticket(connection, onDrain);
+        live.add(t);
+        return t;
+    }
+
+    public void shutdown() {
+        List<Ticket> draining;
+        List<Closeable> toClose;
+        synchronized (this) {
+            if (shuttingDown) return;
+            shuttingDown = true;
+            draining = new ArrayList<>(live);
+            toClose = new ArrayList<>(listeners);
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMs);
+
+        for (Closeable c : toClose) {
+            closeQuietly(c);
+        }
+        LOG.info("%s: shutting down, draining %d connection(s) (timeout %d ms)",
+                name, draining.size(), drainTimeoutMs);
+
+        // En parallèle : une action bloquée sur un client lent ne retarde pas les autres
+        ExecutorService notifier = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(8, draining.size())), r -> {
+                    Thread t = new Thread(r, name + "-drain");
+                    t.setDaemon(true);
+                    return t;
+                });
+        for (Ticket t : draining) {
+            notifier.execute(() -> {
+                try {
+                    t.onDrain.begin();
+                } catch (IOException e) {
+                    closeQuietly(t.connection);
+                }
+            });
+        }
+        notifier.shutdown();
+
+        List<Ticket> left;
+        synchronized (this) {
+            long remaining;
+            while (!live.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            left = new ArrayList<>(live);
+        }
+        for (Ticket t : left) {
+            closeQuietly(t.connection);
+        }
+        notifier.shutdownNow();
+
+        int killed = left.size();
+        int refusedNow;
+        synchronized (this) {
+            refusedNow = refused;
+        }
+        LOG.info("%s: shutdown complete in %d ms, %d drained, %d killed, %d refused",
+                name, (System.nanoTime() - start) / 1_000_000,
+                draining.size() - killed, killed, refusedNow);
+        LOG.flush(1000); // le hook de l'AsyncLogger peut passer avant nous
+    }
+
+    private static void closeQuietly(Closeable c) {
+        try {
+            c.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Application-level heartbeat for logged-in sessions.
+ *
+ * Every interval the monitor looks at when each session last sent anything:
+ * - recent traffic counts as a beat, nothing is sent;
+ * - otherwise a PING is queued (skipped if that session's outbox is full,
+ *   e.g. a half-open socket that no longer drains);
+ * - after more than maxMissed silent intervals the session is evicted.
+ *
+ * Configuration: -Dheartbeat.interval (ms, default 15000, 0 = off),
+ * -Dheartbeat.maxMissed (default 3).
+ */
+public class HeartbeatMonitor {
+
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+
+    /** Called (on the monitor thread) for a session considered dead. */
+    public interface EvictionListener {
+        void onDead(ClientSession session, String reason);
+    }
+
+    private final long intervalMs;
+    private final int maxMissed;
+    private final EvictionListener listener;
+    private final Set<ClientSession> sessions = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong pingsSent = new AtomicLong();
+    private final AtomicLong pingsSkipped = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    public HeartbeatMonitor(long intervalMs, int maxMissed, EvictionListener listener) {
+        this.intervalMs = intervalMs;
+        this.maxMissed = maxMissed;
+        this.listener = listener;
+    }
+
+    public static HeartbeatMonitor fromSystemProperties(EvictionListener listener) {
+        return new HeartbeatMonitor(
+                Long.getLong("heartbeat.interval", 15_000L),
+                Integer.getInteger("heartbeat.maxMissed", 3),
+                listener);
+    }
+
+    public synchronized void start() {
+        if (intervalMs <= 0 || scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                check();
+            } catch (RuntimeException e) {
+                // une exception annulerait les exécutions suivantes
+                LOG.error("Heartbeat check failed: %s", e);
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        LOG.info("Heartbeat every %d ms, eviction after %d missed beats", intervalMs, maxMissed);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public void register(ClientSession session) {
+        session.markAlive();
+        sessions.add(session);
+    }
+
+    public void unregister(ClientSession session) {
+        sessions.remove(session);
+    }
+
+    public String getStats() {
+        return String.format("tracked=%d, pings=%d, skipped=%d, evicted=%d",
+                sessions.size(), pingsSent.get(), pingsSkipped.get(), evicted.get());
+    }
+
+    private void check() {
+        long now = System.nanoTime();
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+
+        for (ClientSession s : sessions) {
+            if (s.isClosed()) {
+                sessions.remove(s);
+                continue;
+            }
+            long silent = now - s.getLastSeenNanos();
+            if (silent < intervalNanos) {
+                continue; // trafic récent = battement
+            }
+            long missed = silent / intervalNanos;
+            if (missed > maxMissed) {
+                evict(s, missed + " missed heartbeats");
+                continue;
+            }
+            try {
+                if (s.trySend(ping(s))) {
+                    pingsSent.incrementAndGet();
+                } else {
+                    pingsSkipped.incrementAndGet();
+                }
+            } catch (IOException e) {
+                evict(s, "ping failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void evict(ClientSession s, String reason) {
+        sessions.remove(s);
+        evicted.incrementAndGet();
+        try {
+            listener.onDead(s, reason);
+        } catch (RuntimeException e) {
+            LOG.warn("Eviction of %s failed: %s", s.getUsername(), e);
+        }
+    }
+
+    private static ChatMessage ping(ClientSession s) {
+        return new ChatMessage(
+                MessageType.PING,
+                "1.0",
+                Instant.now(),
+                "server",
+                s.getUsername(),
+                null,
+                null
+        );
+    }
+}
@@ -0,0 +1,187 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Idle-connection reaper: one hashed timing wheel shared by every connection
+ * instead of a timer (or a blocked setSoTimeout) per socket.
+ *
+ * - touch() is a single volatile write of the wheel's coarse clock, O(1);
+ * - each entry sits in the bucket of its last known deadline; when the wheel
+ *   reaches that bucket the entry is either expired (onIdle is run) or moved
+ *   to the bucket of its new deadline (lazy re-bucketing, at most once per
+ *   timeout period per connection);
+ * - only the ticker thread touches the buckets, new entries go through a
+ *   lock-free queue.
+ *
+ * The onIdle callback runs on the ticker thread and must not block
+ * (typically: mark the session and close its socket).
+ *
+ * Configuration of the shared instance: -Didle.tick (ms, default 500).
+ */
+public class IdleConnectionReaper {
+
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+    private static final int WHEEL_SIZE = 512; // puissance de 2
+
+    private static volatile IdleConnectionReaper defaultReaper;
+
+    /** Registration returned to the connection. */
+    public static final class Handle {
+        private final IdleConnectionReaper wheel;
+        private final String name;
+        private final long timeoutMs;
+        private final Runnable onIdle;
+        private volatile long lastActive; // horloge grossière de la roue (ms)
+        private volatile boolean cancelled;
+        private long rounds;              // tours complets restants (ticker uniquement)
+
+        private Handle(IdleConnectionReaper wheel, String name, long timeoutMs, Runnable onIdle) {
+            this.wheel = wheel;
+            this.name = name;
+            this.timeoutMs = timeoutMs;
+            this.onIdle = onIdle;
+            this.lastActive = wheel.clock;
+        }
+
+        /** Record activity on the connection. */
+        public void touch() {
+            lastActive = wheel.clock;
+        }
+
+        /** Stop tracking (connection closed normally). */
+        public synchronized void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                wheel.tracked.decrementAndGet();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final long tickMs;
+    private final long startNanos = System.nanoTime();
+    private volatile long clock; // ms depuis le démarrage, avancée par le ticker
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // pas de tableau générique en Java
+    private final List<Handle>[] buckets = new List[WHEEL_SIZE];
+    private final ConcurrentLinkedQueue<Handle> pending = new ConcurrentLinkedQueue<>();
+    private long tick; // prochain tick à traiter (ticker uniquement)
+
+    private final AtomicLong tracked = new AtomicLong();
+    private final AtomicLong reaped = new AtomicLong();
+
+    public IdleConnectionReaper(long tickMs) {
+        this.tickMs = Math.max(1, tickMs);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        Thread t = new Thread(this::run, "IdleReaper");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Wheel shared by all the servers of the JVM. */
+    public static IdleConnectionReaper getDefault() {
+        IdleConnectionReaper r = defaultReaper;
+        if (r == null) {
+            synchronized (IdleConnectionReaper.class) {
+                r = defaultReaper;
+                if (r == null) {
+                    r = new IdleConnectionReaper(Long.getLong("idle.tick", 500L));
+                    defaultReaper = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Track a connection: onIdle runs once if no touch() happens for
+     * idleTimeoutMs (precision: one tick).
+     */
+    public Handle register(String name, long idleTimeoutMs, Runnable onIdle) {
+        Handle h = new Handle(this, name, idleTimeoutMs, onIdle);
+        tracked.incrementAndGet();
+        pending.add(h);
+        return h;
+    }
+
+    public long getTrackedCount() { return tracked.get(); }
+    public long getReapedCount() { return reaped.get(); }
+
+    // ================= Ticker =================
+
+    private void run() {
+        while (true) {
+            try {
+                Thread.sleep(tickMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = (System.nanoTime() - startNanos) / 1_000_000;
+            clock = now;
+
+            Handle h;
+            while ((h = pending.poll()) != null) {
+                schedule(h, now, tick);
+            }
+            // Rattrape les ticks manqués si le thread a été retardé
+            long target = now / tickMs;
+            while (tick <= target) {
+                expire(buckets[(int) (tick & (WHEEL_SIZE - 1))], now);
+                tick++;
+            }
+        }
+    }
+
+    private void expire(List<Handle> bucket, long now) {
+        int kept = 0;
+        int n = bucket.size();
+        List<Handle> moved = null;
+        for (int i = 0; i < n; i++) {
+            Handle h = bucket.get(i);
+            if (h.cancelled) continue;
+            if (h.rounds > 0) {
+                h.rounds--;
+                bucket.set(kept++, h);
+                continue;
+            }
+            long deadline = h.lastActive + h.timeoutMs;
+            if (deadline <= now) {
+                h.cancel();
+                reaped.incrementAndGet();
+                try {
+                    h.onIdle.run();
+                } catch (RuntimeException e) {
+                    LOG.warn("Idle callback failed for %s: %s", h.name, e);
+                }
+            } else {
+                // Actif depuis : on le range au bucket de sa nouvelle échéance
+                if (moved == null) moved = new ArrayList<>();
+                moved.add(h);
+            }
+        }
+        bucket.subList(kept, n).clear();
+        if (moved != null) {
+            for (Handle h : moved) schedule(h, now, tick + 1); // le tick courant est déjà passé
+        }
+    }
+
+    /**
+     * Put h in the bucket of its deadline; firstTick is the first tick that
+     * will still be processed, so the bucket is visited (target - firstTick) / WHEEL_SIZE
+     * times before the target tick.
+     */
+    private void schedule(Handle h, long now, long firstTick) {
+        long deadline = h.lastActive + h.timeoutMs;
+        long ticks = Math.max(1, (deadline - now + tickMs - 1) / tickMs);
+        long target = Math.max(firstTick, now / tickMs + ticks);
+        h.rounds = (target - firstTick) / WHEEL_SIZE;
+        buckets[(int) (target & (WHEEL_SIZE - 1))].add(h);
+    }
+}
@@ -0,0 +1,111 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with a bounded relative error (HDR style).
+ *
+ * Values (nanoseconds) go into log-linear buckets: exact below 128, then 64
+ * sub-buckets per power of two, i.e. about 1.6% precision from nanoseconds to
+ * hours in ~4K counters. record() is a couple of atomic increments, so the
+ * same histogram can be shared by thousands of threads without locking, and
+ * percentiles are read from the counts without keeping any sample.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 7;                 // 128 valeurs exactes
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF = SUB_COUNT / 2;         // sous-buckets par puissance de 2
+    private static final int BUCKETS = 64 * HALF + SUB_COUNT;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Record one value in ns (negative values count as 0). */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(v));
+        count.incrementAndGet();
+        sum.addAndGet(v);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    /** Add the counts of other into this one. */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) counts.addAndGet(i, c);
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return (n == 0) ? 0 : (double) sum.get() / n;
+    }
+
+    /** Value at percentile p (0-100), upper bound of its bucket (at most the max); 0 if empty. */
+    public long getValueAtPercentile(double p) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /** "name: n=..., mean, p50, p90, p99, p99.9, max" in ms. */
+    public String summary() {
+        return String.format(Locale.ROOT, "%s: n=%d, mean %.3f ms, p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f ms",
+                name, getCount(), getMean() / 1e6,
+                getValueAtPercentile(50) / 1e6, getValueAtPercentile(90) / 1e6,
+                getValueAtPercentile(99) / 1e6, getValueAtPercentile(99.9) / 1e6, getMax() / 1e6);
+    }
+
+    @Override
+    public String toString() {
+        return summary();
+    }
+
+    // ------------------------------------------------------------------
+
+    private static int indexOf(long v) {
+        // décalage pour que v tienne sur SUB_BITS bits ; 0 pour les petites valeurs
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(v) - SUB_BITS);
+        int sub = (int) (v >>> shift); // dans [HALF, SUB_COUNT) dès que shift > 0
+        return (shift == 0) ? sub : shift * HALF + sub;
+    }
+
+    private static long highestOf(int index) {
+        if (index < SUB_COUNT) return index;
+        int shift = index / HALF - 1;
+        long sub = index - (long) shift * HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-hop latency inside SecureChatServer, one histogram per hop:
+ * - parse:    frame fully read -> ChatMessage decoded;
+ * - dispatch: decoded -> handed to the room / recipient (routing, limits);
+ * - queue:    handed over -> this session's write lock acquired (earlier
+ *             members of the broadcast, other writers of the session);
+ * - write:    lock acquired -> frame written and flushed (TLS + socket).
+ *
+ * record*() are a few atomic increments (LatencyHistogram), cheap enough to
+ * stay on by default. Summaries are logged at shutdown, and every
+ * -Dlatency.report seconds if set.
+ *
+ * Configuration: -Dlatency.tracking=false (off), -Dlatency.report (s, default 0).
+ */
+public class LatencyTracker {
+
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+
+    private static volatile LatencyTracker defaultTracker;
+
+    private final boolean enabled;
+    private final long reportSeconds;
+    private final LatencyHistogram parse = new LatencyHistogram("parse");
+    private final LatencyHistogram dispatch = new LatencyHistogram("dispatch");
+    private final LatencyHistogram queue = new LatencyHistogram("queue");
+    private final LatencyHistogram write = new LatencyHistogram("write");
+    private ScheduledExecutorService reporter;
+
+    public LatencyTracker(boolean enabled, long reportSeconds) {
+        this.enabled = enabled;
+        this.reportSeconds = reportSeconds;
+    }
+
+    /** Shared by the server, its rooms and sessions. */
+    public static LatencyTracker getDefault() {
+        LatencyTracker t = defaultTracker;
+        if (t == null) {
+            synchronized (LatencyTracker.class) {
+                t = defaultTracker;
+                if (t == null) {
+                    t = new LatencyTracker(!"false".equalsIgnoreCase(System.getProperty("latency.tracking")),
+                            Long.getLong("latency.report", 0L));
+                    defaultTracker = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void recordParse(long nanos) {
+        if (enabled) parse.record(nanos);
+    }
+
+    public void recordDispatch(long nanos) {
+        if (enabled) dispatch.record(nanos);
+    }
+
+    public void recordQueue(long nanos) {
+        if (enabled) queue.record(nanos);
+    }
+
+    public void recordWrite(long nanos) {
+        if (enabled) write.record(nanos);
+    }
+
+    /** Periodic report, if configured. */
+    public synchronized void start() {
+        if (!enabled || reportSeconds <= 0 || reporter != null) return;
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "LatencyReport");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(this::log, reportSeconds, reportSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    /** One line per hop (cumulated since start). */
+    public void log() {
+        if (!enabled) return;
+        for (LatencyHistogram h : new LatencyHistogram[]{parse, dispatch, queue, write}) {
+            LOG.info("Latency %s", h.summary());
+        }
+    }
+}
@@ -5,5 +5,7 @@ public enum MessageType {
     TEXT_MESSAGE,
     PRIVATE_MESSAGE,
     USER_LIST_REQUEST,
-    ERROR_RESPONSE
+    ERROR_RESPONSE,
+    PING,             // Heartbeat, either direction
+    PONG              // Reply to PING
 }
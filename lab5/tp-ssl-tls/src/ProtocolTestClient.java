@@ -66,7 +66,7 @@ public class ProtocolTestClient {
                 username,
                 null,
                 null,
-                null
+                loginOffer()
         );
         sendMessage(out, login);
         System.out.println("Sent LOGIN_REQUEST as " + username);
@@ -108,6 +108,10 @@ public class ProtocolTestClient {
                 System.out.println("Server closed connection.");
                 break;
             }
+            if (answerPing(out, username, msg)) {
+                i--; // un heartbeat ne compte pas dans les 5 messages
+                continue;
+            }
             System.out.println("Received: " + msg);
         }
     }
@@ -125,7 +129,7 @@ public class ProtocolTestClient {
                 username,
                 null,
                 null,
-                null
+                loginOffer()
         );
         sendMessage(out, login);
         System.out.println("Sent LOGIN_REQUEST as " + username);
@@ -165,6 +169,9 @@ public class ProtocolTestClient {
                         System.out.println("\n[INCOMING] Server closed connection.");
                         break;
                     }
+                    if (answerPing(out, username, msg)) {
+                        continue; // heartbeat silencieux
+                    }
                     System.out.println("\n[INCOMING] " + msg);
                     System.out.print("> ");
                 }
@@ -275,28 +282,34 @@ public class ProtocolTestClient {
 
     /* ====================== Envoi / réception de ChatMessage ======================= */
 
-    private void sendMessage(DataOutputStream out, ChatMessage msg) throws IOException {
+    // synchronized : le thread de réception répond aux PING pendant que l'utilisateur écrit
+    private synchronized void sendMessage(DataOutputStream out, ChatMessage msg) throws IOException {
         byte[] data = msg.toBytes(); // [4 bytes length][JSON UTF-8]
         out.write(data);
         out.flush();
     }
 
-    private ChatMessage readMessage(DataInputStream in) throws IOException {
-        try {
-            int len = in.readInt();
-            if (len <= 0 || len > 64 * 1024) {
-                throw new IOException("Invalid length: " + len);
-            }
-            byte[] jsonBytes = new byte[len];
-            in.readFully(jsonBytes);
+    /** Reply PONG to a server PING; true if msg was a heartbeat. */
+    private boolean answerPing(DataOutputStream out, String username, ChatMessage msg) throws IOException {
+        if (msg.getType() == MessageType.PONG) {
+            return true;
+        }
+        if (msg.getType() != MessageType.PING) {
+            return false;
+        }
+        sendMessage(out, new ChatMessage(MessageType.PONG, "1.0", Instant.now(), username, null, null, null));
+        return true;
+    }
 
-            byte[] data = new byte[4 + len];
-            data[0] = (byte) ((len >> 24) & 0xFF);
-            data[1] = (byte) ((len >> 16) & 0xFF);
-            data[2] = (byte) ((len >> 8) & 0xFF);
-            data[3] = (byte) (len & 0xFF);
-            System.arraycopy(jsonBytes, 0, data, 4, len);
+    /** LOGIN_REQUEST content: offer compressed frames unless -Dchat.compression=false. */
+    private static String loginOffer() {
+        return FrameCompression.isEnabled() ? FrameCompression.LOGIN_OFFER : null;
+    }
 
+    private ChatMessage readMessage(DataInputStream in) throws IOException {
+        try {
+            // Trame éventuellement compressée (bit 31 de la longueur), rendue en clair
+            byte[] data = FrameCompression.readFrame(in, 128 * 1024);
             return ChatMessage.fromBytes(data);
 
         } catch (EOFException e) {
@@ -1,21 +1,22 @@
 import javax.net.ssl.*;
 import java.io.*;
 import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class SSLTCPServer {
 
     private static final int DEFAULT_PORT = 8443;
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
 
     // === Fields (comme dans les labs précédents) ===
     private final int port;
-    private SSLServerSocket serverSocket;
-    private volatile boolean isRunning = true;
+    private MultiAcceptor acceptor;
     private static final AtomicInteger clientCounter = new AtomicInteger(0);
+    private final GracefulShutdown drain = new GracefulShutdown("SSLTCPServer");
 
     // === Constructor (demande du TP) ===
     public SSLTCPServer(int port, String keystorePath, String password) {
@@ -24,10 +25,14 @@ public class SSLTCPServer {
             SSLContext sslContext = createSSLContext(keystorePath, password);
 
             SSLServerSocketFactory factory = sslContext.getServerSocketFactory();
-            this.serverSocket = (SSLServerSocket) factory.createServerSocket(port);
+            // N threads d'accept (-Daccept.threads), SO_REUSEPORT en option
+            this.acceptor = MultiAcceptor.fromSystemProperties("SSLTCPServer", port, factory).bind();
 
             // Optionnel : limiter les versions TLS
-            // this.serverSocket.setEnabledProtocols(new String[]{"TLSv1.2", "TLSv1.3"});
+            // for (ServerSocket ss : acceptor.getSockets())
+            //     ((SSLServerSocket) ss).setEnabledProtocols(new String[]{"TLSv1.2", "TLSv1.3"});
+
+            drain.addListener(this.acceptor);
 
             log("SSL server socket created on port " + port);
         } catch (Exception e) {
@@ -37,43 +42,38 @@ public class SSLTCPServer {
 
     // === Méthode de log (copie l’esprit de TCPServer.log()) ===
     private void log(String msg) {
-        String time = LocalDateTime.now()
-                .format(DateTimeFormatter.ofPattern("HH:mm:ss"));
-        System.out.println("[" + time + "] " + msg);
+        LOG.info(msg);
     }
 
     // === Core method: launch() (boucle d’acceptation, comme dans les labs) ===
     public void launch() {
         log("SSLTCPServer(port=" + port + ") starting...");
+        drain.installShutdownHook(this::shutdown);
 
         try {
-            while (isRunning) {
-                // Accepte une nouvelle connexion SSL
-                SSLSocket clientSocket = (SSLSocket) serverSocket.accept();
+            acceptor.run(this::onAccept);
+            log("Server stopped.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            shutdown();
+        }
+    }
 
-                int clientId = clientCounter.incrementAndGet();
-                InetAddress addr = clientSocket.getInetAddress();
-                String clientIp = (addr != null) ? addr.getHostAddress() : "unknown";
+    // === Appelé par un thread d'accept pour chaque nouvelle connexion SSL ===
+    private void onAccept(Socket socket) {
+        SSLSocket clientSocket = (SSLSocket) socket;
 
-                log("New SSL connection from " + clientIp + " (client #" + clientId + ")");
+        int clientId = clientCounter.incrementAndGet();
+        InetAddress addr = clientSocket.getInetAddress();
+        String clientIp = (addr != null) ? addr.getHostAddress() : "unknown";
 
-                // Un thread par client (comme ConnectionThread)
-                Thread t = new Thread(() -> handleClient(clientId, clientSocket));
-                t.setName("SSLClientHandler-" + clientId);
-                t.start();
+        log("New SSL connection from " + clientIp + " (client #" + clientId + ")");
 
-                // Ici tu pourrais faire des stats (comme printThreadStats() dans MultithreadedTCPServer)
-            }
-        } catch (IOException e) {
-            if (isRunning) {
-                log("Server error: " + e.getMessage());
-                e.printStackTrace();
-            } else {
-                log("Server stopped.");
-            }
-        } finally {
-            shutdown();
-        }
+        // Un thread par client (comme ConnectionThread)
+        Thread t = new Thread(() -> handleClient(clientId, clientSocket));
+        t.setName("SSLClientHandler-" + clientId);
+        t.start();
     }
 
     // === createSSLContext() (exactement ce que veut le TP) ===
@@ -100,6 +100,7 @@ public class SSLTCPServer {
     private void handleClient(int clientId, SSLSocket clientSocket) {
         String clientIp = clientSocket.getInetAddress().getHostAddress();
         log("Handling SSL client #" + clientId + " from " + clientIp);
+        GracefulShutdown.Ticket ticket = null;
 
         try (SSLSocket socket = clientSocket;
              BufferedReader in = new BufferedReader(
@@ -116,6 +117,17 @@ public class SSLTCPServer {
                 return;
             }
 
+            // Arrêt du serveur : pas de shutdownInput() en TLS, on prévient puis on ferme.
+            // PrintWriter est synchronisé : l'écho en cours part avant l'avis.
+            ticket = drain.register(socket, () -> {
+                out.println("Server shutting down, goodbye secure client #" + clientId);
+                clientSocket.close(); // même socket ; le try-with-resources la refermera sans effet
+            });
+            if (ticket == null) {
+                out.println("Server shutting down, please reconnect later.");
+                return;
+            }
+
             // Message de bienvenue (comme lab4, mais version SSL)
             out.println("Welcome (over TLS)! You are secure client #" + clientId);
 
@@ -129,34 +141,38 @@ public class SSLTCPServer {
 
                 String tagged = "[#" + clientId + " " + clientIp + "] " + line;
 
-                // Affichage côté serveur (echo + log)
-                System.out.println(tagged);
+                // Affichage côté serveur (echo + log, async et échantillonné)
+                if (LOG.sampleTraffic()) LOG.info(tagged);
 
                 // Echo vers le client (fonctionnalité demandée dans le TP)
                 out.println(tagged);
             }
 
         } catch (IOException e) {
-            log("I/O error with client #" + clientId + " (" + clientIp + "): " + e.getMessage());
+            if (drain.isShuttingDown()) {
+                log("SSL client #" + clientId + " closed by server shutdown");
+            } else {
+                log("I/O error with client #" + clientId + " (" + clientIp + "): " + e.getMessage());
+            }
         } finally {
             try {
                 clientSocket.close();
             } catch (IOException ignored) {
             }
+            if (ticket != null) {
+                ticket.done();
+            }
             log("SSL client #" + clientId + " (" + clientIp + ") disconnected");
         }
     }
 
     // === Méthode de shutdown (graceful shutdown, demandée dans le TP) ===
+    // Ferme la socket serveur, prévient les clients, attend puis force la fermeture
     public void shutdown() {
-        isRunning = false;
-        if (serverSocket != null && !serverSocket.isClosed()) {
-            try {
-                serverSocket.close();
-                log("Server socket closed.");
-            } catch (IOException e) {
-                log("Error while closing server socket: " + e.getMessage());
-            }
+        drain.shutdown();
+        if (acceptor != null && !acceptor.isClosed()) {
+            acceptor.close();
+            log("Server socket closed.");
         }
     }
 
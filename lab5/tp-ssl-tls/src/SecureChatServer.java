@@ -6,20 +6,27 @@ import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.Socket;
 import java.security.KeyStore;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SecureChatServer {
 
+    private static final AsyncLogger LOG = AsyncLogger.getDefault();
+    private static final IdleConnectionReaper REAPER = IdleConnectionReaper.getDefault();
+
+    // Inactivité max avant fermeture (-Didle.timeout, ms), handshake compris
+    private static final long IDLE_TIMEOUT_MS = Long.getLong("idle.timeout", 300_000L);
+
     private final int port;
     private final String keystorePath;
     private final String keystorePassword;
 
-    private SSLServerSocket serverSocket;
-    private volatile boolean isRunning = true;
+    private volatile MultiAcceptor acceptor;
 
     // Sessions actives : username -> session
     private final Map<String, ClientSession> activeSessions = new ConcurrentHashMap<>();
@@ -27,6 +34,35 @@ public class SecureChatServer {
     // Rooms : roomName -> ChatRoom
     private final Map<String, ChatRoom> chatRooms = new ConcurrentHashMap<>();
 
+    // PING/PONG + éviction des pairs morts (sessions loggées uniquement)
+    private final HeartbeatMonitor heartbeat = HeartbeatMonitor.fromSystemProperties(this::evict);
+
+    // Arrêt propre : avis aux clients, écritures en cours terminées, puis fermeture
+    private final GracefulShutdown drain = new GracefulShutdown("SecureChatServer");
+    private final AtomicBoolean stopping = new AtomicBoolean();
+
+    // Cap global + limite par IP juste après accept() (avant thread et handshake)
+    private final AcceptLimiter limiter = AcceptLimiter.fromSystemProperties();
+
+    // Anti-flood : messages/s par session et broadcasts/s par room
+    // (-Dchat.sessionRate, -Dchat.sessionBurst, -Dchat.roomRate, -Dchat.roomBurst)
+    private static final double SESSION_RATE = Double.parseDouble(System.getProperty("chat.sessionRate", "10"));
+    private static final int SESSION_BURST = Integer.getInteger("chat.sessionBurst", 20);
+    private static final double ROOM_RATE = Double.parseDouble(System.getProperty("chat.roomRate", "200"));
+    private static final int ROOM_BURST = Integer.getInteger("chat.roomBurst", 400);
+    // Messages refusés d'affilée avant déconnexion (-Dchat.floodKick)
+    private static final long FLOOD_KICK = Long.getLong("chat.floodKick", 500L);
+    private static final long THROTTLE_NOTICE_NANOS = 1_000_000_000L;
+
+    // Messages directs (privés, erreurs...) aux sessions qui ont négocié la compression
+    private final FrameCompression directCompression = FrameCompression.fromSystemProperties("direct");
+
+    // Latence par étape : parse, dispatch, attente d'écriture, écriture
+    private final LatencyTracker latency = LatencyTracker.getDefault();
+
+    private final AtomicLong throttledSession = new AtomicLong();
+    private final AtomicLong throttledRoom = new AtomicLong();
+
     public SecureChatServer(int port, String keystorePath, String keystorePassword) {
         this.port = port;
         this.keystorePath = keystorePath;
@@ -34,9 +70,7 @@ public class SecureChatServer {
     }
 
     private void log(String msg) {
-        String time = LocalDateTime.now()
-                .format(DateTimeFormatter.ofPattern("HH:mm:ss"));
-        System.out.println("[" + time + "] " + msg);
+        LOG.info(msg);
     }
 
     // ================= SSL INIT =================
@@ -61,44 +95,99 @@ public class SecureChatServer {
         try {
             SSLContext sslContext = createSSLContext();
             SSLServerSocketFactory factory = sslContext.getServerSocketFactory();
-            serverSocket = (SSLServerSocket) factory.createServerSocket(port);
+            // N threads d'accept (-Daccept.threads), SO_REUSEPORT en option ;
+            // le handshake reste sur le thread du client
+            acceptor = MultiAcceptor.fromSystemProperties("SecureChatServer", port, factory).bind();
 
             log("SecureChatServer listening on port " + port);
+            heartbeat.start();
+            latency.start();
+            drain.addListener(acceptor);
+            drain.installShutdownHook(this::shutdown);
 
-            while (isRunning) {
-                SSLSocket clientSocket = (SSLSocket) serverSocket.accept();
-                InetAddress addr = clientSocket.getInetAddress();
-                String ip = (addr != null) ? addr.getHostAddress() : "unknown";
-
-                log("New connection from " + ip);
-
-                Thread t = new Thread(() -> handleClient(clientSocket));
-                t.setName("SecureChatClient-" + ip);
-                t.start();
-            }
+            acceptor.run(this::onAccept);
         } catch (Exception e) {
-            log("Server error: " + e.getMessage());
-            e.printStackTrace();
+            if (!drain.isShuttingDown()) {
+                log("Server error: " + e.getMessage());
+                e.printStackTrace();
+            }
         } finally {
             shutdown();
         }
     }
 
+    /** Acceptor thread: admission, then one thread per client. */
+    private void onAccept(Socket socket) {
+        SSLSocket clientSocket = (SSLSocket) socket;
+        AcceptLimiter.Permit permit = limiter.admitOrClose(clientSocket);
+        if (permit == null) {
+            return;
+        }
+        InetAddress addr = clientSocket.getInetAddress();
+        String ip = (addr != null) ? addr.getHostAddress() : "unknown";
+
+        log("New connection from " + ip);
+
+        Thread t = new Thread(() -> handleClient(clientSocket, permit));
+        t.setName("SecureChatClient-" + ip);
+        t.start();
+    }
+
     public void shutdown() {
-        isRunning = false;
-        if (serverSocket != null && !serverSocket.isClosed()) {
-            try {
-                serverSocket.close();
-            } catch (IOException ignored) {}
+        if (!stopping.compareAndSet(false, true)) return; // hook + finally de launch()
+        heartbeat.stop();
+        drain.shutdown();
+        if (acceptor != null) {
+            acceptor.close();
+        }
+        log("SecureChatServer stopped. Throttled messages: session=" + throttledSession.get()
+                + ", room=" + throttledRoom.get() + " | " + limiter.getStats());
+        for (ChatRoom room : chatRooms.values()) {
+            log("Compression " + room.getCompressionStats());
         }
-        log("SecureChatServer stopped.");
+        log("Compression " + directCompression.getStats());
+        latency.stop();
+        latency.log();
     }
 
     // ================ CLIENT HANDLING ================
 
-    private void handleClient(SSLSocket clientSocket) {
+    private void handleClient(SSLSocket clientSocket, AcceptLimiter.Permit permit) {
         ClientSession session = null;
 
+        // Le reaper ferme la socket d'un client inactif (ou bloqué dans le
+        // handshake), ce qui débloque la lecture en cours. Fermeture hors du
+        // thread de la roue : SSLSocket.close() envoie close_notify et peut
+        // bloquer sur un pair qui ne lit plus.
+        AtomicBoolean timedOut = new AtomicBoolean();
+        IdleConnectionReaper.Handle idle = REAPER.register(
+                "tls " + clientSocket.getInetAddress(), IDLE_TIMEOUT_MS, () -> {
+                    timedOut.set(true);
+                    ClientSession.closeAsync(clientSocket);
+                });
+
+        // Pas de shutdownInput() en TLS : une session loggée reçoit l'avis
+        // (après ce qui est déjà dans sa file), puis la socket est fermée.
+        AtomicReference<ClientSession> current = new AtomicReference<>();
+        GracefulShutdown.Ticket ticket = drain.register(clientSocket, () -> {
+            ClientSession s = current.get();
+            if (s != null) {
+                s.send(shutdownNotice(s));
+                s.flush(1000);
+                s.close();
+            } else {
+                clientSocket.close();
+            }
+        });
+        if (ticket == null) {
+            idle.cancel();
+            permit.release();
+            try {
+                clientSocket.close();
+            } catch (IOException ignored) {}
+            return;
+        }
+
         try (SSLSocket socket = clientSocket) {
 
             socket.startHandshake();
@@ -110,11 +199,16 @@ public class SecureChatServer {
 
             while (true) {
                 ChatMessage msg = readMessage(in);
+                long parsedAt = System.nanoTime();
                 if (msg == null) {
                     log("Client " + (session != null ? session.getUsername() : ip)
                             + " disconnected.");
                     break;
                 }
+                idle.touch();
+                if (session != null) {
+                    session.markAlive();
+                }
 
                 if (session == null) {
                     // On attend LOGIN_REQUEST comme premier message
@@ -125,21 +219,39 @@ public class SecureChatServer {
                             log("Login failed, closing connection from " + ip);
                             break;
                         }
+                        heartbeat.register(session);
+                        current.set(session);
                     } else {
                         sendError(out, "You must login first.");
                     }
                 } else {
                     // Utilisateur déjà loggé -> on traite les messages de chat
-                    handleProtocolMessage(session, msg);
+                    handleProtocolMessage(session, msg, parsedAt);
                 }
             }
 
         } catch (IOException e) {
-            log("Client I/O error: " + e.getMessage());
+            if (timedOut.get()) {
+                log("Idle timeout (" + IDLE_TIMEOUT_MS + " ms) for "
+                        + (session != null ? session.getUsername() : clientSocket.getInetAddress()));
+            } else if (drain.isShuttingDown()) {
+                log("Connection of " + (session != null ? session.getUsername() : clientSocket.getInetAddress())
+                        + " closed by server shutdown");
+            } else if (session != null && session.isClosed()) {
+                log("Connection of " + session.getUsername() + " closed by the server (evicted)");
+            } else {
+                log("Client I/O error: " + e.getMessage());
+            }
         } finally {
+            idle.cancel();
+            permit.release();
+            ticket.done();
             // Nettoyage session + room
             if (session != null) {
-                activeSessions.remove(session.getUsername());
+                session.close(); // arrête son thread d'écriture
+                heartbeat.unregister(session);
+                // remove(key, value) : le nom a pu être repris après une éviction
+                activeSessions.remove(session.getUsername(), session);
                 String roomName = session.getCurrentRoom();
                 if (roomName != null) {
                     ChatRoom room = chatRooms.get(roomName);
@@ -161,6 +273,7 @@ public class SecureChatServer {
 
             byte[] jsonBytes = new byte[len];
             in.readFully(jsonBytes);
+            long readAt = System.nanoTime();
 
             // On recrée le buffer attendu par ChatMessage.fromBytes()
             byte[] data = new byte[4 + len];
@@ -170,7 +283,10 @@ public class SecureChatServer {
             data[3] = (byte) (len & 0xFF);
             System.arraycopy(jsonBytes, 0, data, 4, len);
 
-            return ChatMessage.fromBytes(data);
+            ChatMessage msg = ChatMessage.fromBytes(data);
+            latency.recordParse(System.nanoTime() - readAt);
+            msg.setIngressNanos(ChatMessage.nowEpochNanos()); // remplace ce qu'aurait mis le client
+            return msg;
 
         } catch (EOFException e) {
             // Client a fermé la connexion
@@ -195,10 +311,17 @@ public class SecureChatServer {
             return null;
         }
 
-        ClientSession session = new ClientSession(username, socket, out);
+        ClientSession session = new ClientSession(username, socket, out,
+                new TokenBucket(SESSION_RATE, SESSION_BURST));
         activeSessions.put(username, session);
 
-        log("User logged in: " + username);
+        // Le client propose la compression dans le contenu du LOGIN_REQUEST
+        boolean compress = FrameCompression.isEnabled()
+                && FrameCompression.LOGIN_OFFER.equals(loginMsg.getContent());
+        if (compress) {
+            session.enableCompression(directCompression);
+        }
+        log("User logged in: " + username + (compress ? " (compression on)" : ""));
 
         ChatMessage response = new ChatMessage(
                 MessageType.LOGIN_RESPONSE,
@@ -214,21 +337,34 @@ public class SecureChatServer {
         return session;
     }
 
-    private void handleProtocolMessage(ClientSession session, ChatMessage message) {
+    private void handleProtocolMessage(ClientSession session, ChatMessage message, long parsedAt) {
         try {
+            // Limite par session avant tout traitement (un PONG ne coûte rien)
+            if (message.getType() != MessageType.PONG && !session.tryAcquireMessage()) {
+                throttledSession.incrementAndGet();
+                throttle(session, "max " + SESSION_RATE + " msg/s");
+                return;
+            }
             switch (message.getType()) {
                 case JOIN_ROOM_REQUEST:
                     handleJoinRoom(session, message);
                     break;
                 case TEXT_MESSAGE:
-                    handleTextMessage(session, message);
+                    handleTextMessage(session, message, parsedAt);
                     break;
                 case PRIVATE_MESSAGE:
-                    handlePrivateMessage(session, message);
+                    handlePrivateMessage(session, message, parsedAt);
                     break;
                 case USER_LIST_REQUEST:
                     handleUserListRequest(session);
                     break;
+                case PING:
+                    session.send(new ChatMessage(MessageType.PONG, "1.0", java.time.Instant.now(),
+                            "server", session.getUsername(), null, null));
+                    break;
+                case PONG:
+                    // déjà compté par markAlive()
+                    break;
                 default:
                     sendError(session, "Unsupported message type: " + message.getType());
             }
@@ -238,10 +374,56 @@ public class SecureChatServer {
         }
     }
 
+    /**
+     * Dead peer (heartbeat): remove it from the sessions and its room right
+     * away, then close the socket so that its handler thread terminates.
+     */
+    private void evict(ClientSession session, String reason) {
+        log("Evicting " + session.getUsername() + ": " + reason);
+        activeSessions.remove(session.getUsername(), session);
+        String roomName = session.getCurrentRoom();
+        if (roomName != null) {
+            ChatRoom room = chatRooms.get(roomName);
+            if (room != null) {
+                room.leave(session);
+            }
+        }
+        session.close();
+    }
+
+    private ChatMessage shutdownNotice(ClientSession session) {
+        return new ChatMessage(
+                MessageType.TEXT_MESSAGE,
+                "1.0",
+                java.time.Instant.now(),
+                "server",
+                session.getUsername(),
+                null,
+                "Server shutting down, please reconnect later."
+        );
+    }
+
+    /**
+     * Message dropped by a rate limit: ERROR_RESPONSE at most once per second
+     * (with the number dropped), disconnect after FLOOD_KICK drops in a row.
+     */
+    private void throttle(ClientSession session, String reason) throws IOException {
+        long inARow = session.recordDrop();
+        if (inARow >= FLOOD_KICK) {
+            evict(session, "flooding (" + inARow + " messages over the limit)");
+            return;
+        }
+        String notice = session.takeThrottleNotice(reason, THROTTLE_NOTICE_NANOS);
+        if (notice != null) {
+            sendError(session, notice);
+        }
+    }
+
     // ================ ROOMS & BROADCAST ================
 
     private ChatRoom getOrCreateRoom(String roomName) {
-        return chatRooms.computeIfAbsent(roomName, ChatRoom::new);
+        return chatRooms.computeIfAbsent(roomName,
+                name -> new ChatRoom(name, new TokenBucket(ROOM_RATE, ROOM_BURST)));
     }
 
     private void handleJoinRoom(ClientSession session, ChatMessage msg) throws IOException {
@@ -275,10 +457,12 @@ public class SecureChatServer {
                 roomName,
                 session.getUsername() + " joined the room."
         );
-        room.broadcast(info);
+        if (room.tryAcquireBroadcast()) { // info seulement si la room a du budget
+            room.broadcast(info);
+        }
     }
 
-    private void handleTextMessage(ClientSession session, ChatMessage msg) throws IOException {
+    private void handleTextMessage(ClientSession session, ChatMessage msg, long parsedAt) throws IOException {
         String roomName = msg.getRoom();
         if (roomName == null || roomName.isBlank()) {
             // Si pas précisé dans le message, on prend la room courante
@@ -296,19 +480,29 @@ public class SecureChatServer {
             return;
         }
 
+        // Budget de la room : plusieurs membres lents à saturer ne suffisent plus
+        if (!room.tryAcquireBroadcast()) {
+            throttledRoom.incrementAndGet();
+            throttle(session, "room " + roomName + " is too busy");
+            return;
+        }
+
+        // Heure d'envoi du client conservée (latence de bout en bout), + arrivée serveur
         ChatMessage broadcastMsg = new ChatMessage(
             msg.getType(), // TEXT_MESSAGE
             msg.getVersion() != null ? msg.getVersion() : "1.0",
-            java.time.Instant.now(),
+            msg.getTimestamp() != null ? msg.getTimestamp() : java.time.Instant.now(),
             session.getUsername(),
             null,
             roomName,
             msg.getContent()
         );
+        broadcastMsg.setIngressNanos(msg.getIngressNanos());
+        latency.recordDispatch(System.nanoTime() - parsedAt);
         room.broadcast(broadcastMsg);
     }
 
-    private void handlePrivateMessage(ClientSession session, ChatMessage msg) throws IOException {
+    private void handlePrivateMessage(ClientSession session, ChatMessage msg, long parsedAt) throws IOException {
         String recipientName = msg.getRecipient();
         if (recipientName == null || recipientName.isBlank()) {
             sendError(session, "Recipient is required for private message.");
@@ -324,12 +518,15 @@ public class SecureChatServer {
         ChatMessage pm = new ChatMessage(
                 MessageType.PRIVATE_MESSAGE,
                 msg.getVersion() != null ? msg.getVersion() : "1.0",
-                java.time.Instant.now(),
+                msg.getTimestamp() != null ? msg.getTimestamp() : java.time.Instant.now(),
                 session.getUsername(),
                 recipientName,
                 null,
                 msg.getContent()
         );
+        pm.setIngressNanos(msg.getIngressNanos());
+        latency.recordDispatch(System.nanoTime() - parsedAt);
+        pm.setEgressNanos(ChatMessage.nowEpochNanos());
         target.send(pm);
     }
 